@@ -0,0 +1,122 @@
+package edu.uob;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+// Hot path of a command: end to end through GameServer, and each stage on its own.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandPipelineBenchmark {
+
+  private static final String PLAYER = "bench";
+
+  @Param({"basic", "extended", "synthetic"})
+  public String world;
+
+  private GameServer server;
+  private GameState gameState;
+  private CommandProcessor processor;
+  private Player player;
+  private String actionCommand;
+  private String getCommand;
+  private String dropCommand;
+  private CommandProcessor.CommandContext actionContext;
+  private CommandTokenizer tokenizer;
+
+  @Setup
+  public void setup() throws Exception {
+      File entitiesFile;
+      File actionsFile;
+      if (world.equals("synthetic")) {
+          File directory = Files.createTempDirectory("stag-world").toFile();
+          entitiesFile = new File(directory, "entities.dot");
+          actionsFile = new File(directory, "actions.xml");
+          new WorldGenerator(1_000, 10, 1.0, 2_000, 0.3, 42).write(entitiesFile, actionsFile);
+          actionCommand = PLAYER + ": " + firstActionCommand(actionsFile);
+          getCommand = PLAYER + ": get " + WorldGenerator.entityName(0, 0);
+          dropCommand = PLAYER + ": drop " + WorldGenerator.entityName(0, 0);
+      } else {
+          entitiesFile = Paths.get("config", world + "-entities.dot").toAbsolutePath().toFile();
+          actionsFile = Paths.get("config", world + "-actions.xml").toAbsolutePath().toFile();
+          actionCommand = PLAYER + ": please open the trapdoor with the key";
+          getCommand = PLAYER + ": get axe";
+          dropCommand = PLAYER + ": drop axe";
+      }
+      server = new GameServer(entitiesFile, actionsFile);
+      gameState = server.getGameState();
+      processor = server.getCommandProcessor();
+      server.handleCommand(PLAYER + ": look");
+      player = gameState.getPlayer(PLAYER);
+      tokenizer = new CommandTokenizer();
+      tokenizer.tokenise(actionCommand);
+      actionContext = processor.buildCommand(player, tokenizer);
+  }
+
+  // the first generated action sharing a common trigger, phrased as a command that names that trigger
+  // and every subject, so matching has to pick it out of many candidates
+  private static String firstActionCommand(File actionsFile) {
+      LinkedList<GameAction> actions = new LinkedList<>();
+      new ActionParser(actions).parseAction(actionsFile);
+      GameAction action = actions.getFirst();
+      for (GameAction candidate : actions) {
+          if (candidate.getTriggers().size() > 1) {
+              action = candidate;
+              break;
+          }
+      }
+      String trigger = action.getTriggers().get(action.getTriggers().size() - 1);
+      return trigger + " the " + String.join(" and ", action.getSubjects());
+  }
+
+  @Benchmark
+  public String handleLook() {
+      return server.handleCommand(PLAYER + ": look");
+  }
+
+  @Benchmark
+  public String handleGetThenDrop() {
+      server.handleCommand(getCommand);
+      return server.handleCommand(dropCommand);
+  }
+
+  @Benchmark
+  public boolean parseCommand() {
+      return tokenizer.tokenise(actionCommand);
+  }
+
+  @Benchmark
+  public CommandProcessor.CommandContext parseAndBuildCommand() {
+      tokenizer.tokenise(actionCommand);
+      return processor.buildCommand(player, tokenizer);
+  }
+
+  @Benchmark
+  public GameAction findMatchingAction() {
+      LinkedList<String> subjects = actionContext.subjects;
+      return processor.findMatchingAction(player, actionContext.trigger, subjects);
+  }
+
+  @Benchmark
+  public String look() {
+      return gameState.look(PLAYER);
+  }
+}
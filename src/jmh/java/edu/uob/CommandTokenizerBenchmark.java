@@ -0,0 +1,79 @@
+package edu.uob;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+// Command text to vocabulary matches: the span tokenizer against the old regex, split and LinkedList path.
+// Run with -prof gc to compare allocation per command.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandTokenizerBenchmark {
+
+  private static final String COMMAND = "simon: Please open the trapdoor with the key now";
+
+  private Vocabulary vocabulary;
+  private CommandTokenizer tokenizer;
+
+  @Setup
+  public void setup() {
+      File entitiesFile = Paths.get("config", "extended-entities.dot").toAbsolutePath().toFile();
+      File actionsFile = Paths.get("config", "extended-actions.xml").toAbsolutePath().toFile();
+      GameServer server = new GameServer(entitiesFile, actionsFile);
+      vocabulary = server.getGameState().getVocabulary();
+      tokenizer = new CommandTokenizer();
+  }
+
+  @Benchmark
+  public int spanTokenizer() {
+      if (!tokenizer.tokenise(COMMAND)) return -1;
+      return tokenizer.size();
+  }
+
+  @Benchmark
+  public LinkedList<PhraseTrie.Match> spanTokenizerAndScan() {
+      tokenizer.tokenise(COMMAND);
+      return vocabulary.scan(tokenizer);
+  }
+
+  @Benchmark
+  public int legacyParse() {
+      LinkedList<String> words = legacyWords(COMMAND);
+      return words == null ? -1 : words.size();
+  }
+
+  @Benchmark
+  public LinkedList<PhraseTrie.Match> legacyParseAndScan() {
+      return vocabulary.scan(legacyWords(COMMAND));
+  }
+
+  // The previous CommandProcessor.parseCommand, kept here as the baseline
+  private static LinkedList<String> legacyWords(String command) {
+      int splitedIndex = command.indexOf(": ");
+      String playerName = command.substring(0, splitedIndex);
+      if (!playerName.matches("[a-zA-Z\\s'-]+")) return null;
+      StringBuilder commandString = new StringBuilder();
+      commandString.append(command.substring(splitedIndex + 2).trim().toLowerCase());
+      LinkedList<String> commandWords = new LinkedList<>();
+      for (String commandWord : commandString.toString().split("\\s+")) {
+          if (!commandWord.isEmpty()) commandWords.add(commandWord);
+      }
+      return commandWords.isEmpty() ? null : commandWords;
+  }
+}
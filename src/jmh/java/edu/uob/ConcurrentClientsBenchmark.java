@@ -0,0 +1,135 @@
+package edu.uob;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Clients on their own threads and their own persistent connections, served by the concurrent
+// acceptor over real sockets. Each round every client sends a look and a goto, and the commands
+// counter gives commands per millisecond across all of them.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class ConcurrentClientsBenchmark {
+
+  private static final char END_OF_TRANSMISSION = 4;
+
+  @Param({"1", "2", "4", "8", "16"})
+  public int clients;
+
+  private ConnectionAcceptor acceptor;
+  private ExecutorService clientThreads;
+  private ArrayList<Client> sessions;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+      File entitiesFile = Paths.get("config", "extended-entities.dot").toAbsolutePath().toFile();
+      File actionsFile = Paths.get("config", "extended-actions.xml").toAbsolutePath().toFile();
+      GameServer server = new GameServer(entitiesFile, actionsFile);
+      server.setPersistentSessions(true);
+      acceptor = new ConnectionAcceptor(server, 0, ConnectionAcceptor.newWorkerPool(clients));
+      acceptor.start();
+      clientThreads = Executors.newFixedThreadPool(clients);
+      sessions = new ArrayList<>();
+      for (int i = 0; i < clients; i++) {
+          sessions.add(new Client(acceptor.getPort(), "bench" + (char) ('a' + i)));
+      }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws Exception {
+      for (Client client : sessions) client.close();
+      clientThreads.shutdown();
+      acceptor.close();
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+      public long commands;
+
+      @Setup(Level.Iteration)
+      public void reset() {
+          commands = 0;
+      }
+  }
+
+  @Benchmark
+  public void round(Counters counters) throws Exception {
+      for (Future<Integer> sent : clientThreads.invokeAll(sessions)) {
+          counters.commands += sent.get();
+      }
+  }
+
+  // one player on one connection, walking between the cabin and the forest
+  static class Client implements Callable<Integer> {
+      private final Socket socket;
+      private final BufferedReader reader;
+      private final BufferedWriter writer;
+      private final String look;
+      private final String[] moves;
+      private int next;
+
+      Client(int port, String name) throws IOException {
+          socket = new Socket("localhost", port);
+          reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+          writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+          look = name + ": look";
+          moves = new String[] {name + ": goto forest", name + ": goto cabin"};
+      }
+
+      @Override
+      public Integer call() throws IOException {
+          send(look);
+          send(moves[next]);
+          next = 1 - next;
+          return 2;
+      }
+
+      private void send(String command) throws IOException {
+          writer.write(command + "\n");
+          writer.flush();
+          String line = reader.readLine();
+          while (line != null && !line.contains("" + END_OF_TRANSMISSION)) {
+              line = reader.readLine();
+          }
+          if (line == null) throw new IOException("Server closed the connection");
+      }
+
+      void close() throws IOException {
+          socket.close();
+      }
+  }
+}
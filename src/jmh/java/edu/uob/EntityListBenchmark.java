@@ -0,0 +1,92 @@
+package edu.uob;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Name lookups on the name-keyed EntityList against the old linear scan over a HashSet.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityListBenchmark {
+
+  @Param({"10000"})
+  public int entitiesPerLocation;
+
+  private EntityList keyed;
+  private LinearEntityList linear;
+  private String[] probes;
+  private int next;
+
+  @Setup
+  public void setup() {
+      keyed = new EntityList();
+      linear = new LinearEntityList();
+      String[] names = new String[entitiesPerLocation];
+      for (int i = 0; i < names.length; i++) {
+          names[i] = "item" + i;
+          keyed.add(new Artefact(names[i], "An item"));
+          linear.add(new Artefact(names[i], "An item"));
+      }
+      probes = new String[1024];
+      Random random = new Random(42);
+      for (int i = 0; i < probes.length; i++) {
+          probes[i] = names[random.nextInt(names.length)].toUpperCase();
+      }
+  }
+
+  private String nextProbe() {
+      next = (next + 1) & (probes.length - 1);
+      return probes[next];
+  }
+
+  @Benchmark
+  public GameEntity nameKeyedLookup() {
+      String probe = nextProbe();
+      return keyed.contains(probe) ? keyed.getEntity(probe) : null;
+  }
+
+  @Benchmark
+  public GameEntity linearScanLookup() {
+      String probe = nextProbe();
+      return linear.contains(probe) ? linear.getEntity(probe) : null;
+  }
+
+  // The previous EntityList implementation, kept here as the baseline
+  private static final class LinearEntityList {
+      private final HashSet<GameEntity> entities = new HashSet<>();
+
+      void add(GameEntity entity) {
+          this.entities.add(entity);
+      }
+
+      boolean contains(String name) {
+          for (GameEntity entity : this.entities) {
+              if (entity.getName().equalsIgnoreCase(name)) return true;
+          }
+          return false;
+      }
+
+      GameEntity getEntity(String name) {
+          for (GameEntity entity : this.entities) {
+              if (entity.getName().equalsIgnoreCase(name)) return entity;
+          }
+          return null;
+      }
+  }
+}
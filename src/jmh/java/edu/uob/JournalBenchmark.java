@@ -0,0 +1,75 @@
+package edu.uob;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Write commands from several threads, each reply held until its journal record is on disk.
+// Group commit lets one fsync cover every record appended while the previous one was running.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class JournalBenchmark {
+
+  @Param({"false", "true"})
+  public boolean journal;
+
+  private GameServer server;
+  private File journalFile;
+  private final AtomicInteger nextPlayer = new AtomicInteger();
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+      File entitiesFile = Paths.get("config", "extended-entities.dot").toAbsolutePath().toFile();
+      File actionsFile = Paths.get("config", "extended-actions.xml").toAbsolutePath().toFile();
+      server = new GameServer(entitiesFile, actionsFile);
+      journalFile = Files.createTempFile("stag", ".journal").toFile();
+      if (journal) server.openJournal(journalFile);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws Exception {
+      server.closeJournal();
+      Files.deleteIfExists(journalFile.toPath());
+  }
+
+  @State(Scope.Thread)
+  public static class Session {
+      String get;
+      String drop;
+
+      @Setup(Level.Trial)
+      public void setup(JournalBenchmark benchmark) {
+          String name = "bench" + (char) ('a' + benchmark.nextPlayer.getAndIncrement());
+          get = name + ": get log";
+          drop = name + ": drop log";
+      }
+  }
+
+  @Benchmark
+  public String getDrop(Session session) {
+      server.handleCommand(session.get);
+      return server.handleCommand(session.drop);
+  }
+}
@@ -0,0 +1,63 @@
+package edu.uob;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+// Logging one command from four threads: the old println of a built message against the ring buffer.
+// Both write to a stream that discards its input, so only the cost on the request thread is measured.
+// Run with -prof gc to compare the bytes allocated per command.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class LoggingBenchmark {
+
+  private static final String COMMAND = "simon: get axe";
+  private static final String REPLY = "You picked up the axe";
+
+  private PrintStream console;
+  private ServerLog log;
+
+  @Setup(Level.Trial)
+  public void setup() {
+      console = new PrintStream(OutputStream.nullOutputStream());
+      log = new ServerLog(console, 8192, ServerLog.Level.DEBUG, 1);
+      log.start();
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+      log.close();
+  }
+
+  @Benchmark
+  public void println() {
+      StringBuilder receivedMsg = new StringBuilder();
+      receivedMsg.append("Received message from ");
+      receivedMsg.append(COMMAND);
+      console.println(receivedMsg.toString());
+  }
+
+  @Benchmark
+  public void ringBuffer() {
+      log.command(COMMAND, REPLY, 1000);
+  }
+}
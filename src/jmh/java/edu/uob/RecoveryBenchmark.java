@@ -0,0 +1,76 @@
+package edu.uob;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+// Restarting a server that has applied `commands` commands, from the journal alone and from a
+// checkpoint taken 100 commands before it stopped. Only the journal replay grows with uptime.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecoveryBenchmark {
+
+  private static final int TAIL = 100;
+
+  @Param({"10000", "100000"})
+  public int commands;
+
+  @Param({"false", "true"})
+  public boolean checkpoint;
+
+  private File entitiesFile;
+  private File actionsFile;
+  private File directory;
+  private File journalFile;
+  private File checkpointFile;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+      entitiesFile = Paths.get("config", "extended-entities.dot").toAbsolutePath().toFile();
+      actionsFile = Paths.get("config", "extended-actions.xml").toAbsolutePath().toFile();
+      directory = Files.createTempDirectory("stag-recovery").toFile();
+      journalFile = new File(directory, "commands.journal");
+      checkpointFile = new File(directory, "world.checkpoint");
+      GameServer server = new GameServer(entitiesFile, actionsFile);
+      server.openJournal(journalFile);
+      for (int i = 0; i < commands; i++) {
+          if (checkpoint && i == commands - TAIL) server.checkpoint(checkpointFile);
+          server.handleCommand(i % 2 == 0 ? "bench: get axe" : "bench: drop axe");
+      }
+      server.closeJournal();
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws Exception {
+      for (File file : directory.listFiles()) Files.delete(file.toPath());
+      Files.delete(directory.toPath());
+  }
+
+  @Benchmark
+  public GameServer recover() throws Exception {
+      GameServer server = new GameServer(entitiesFile, actionsFile);
+      if (checkpoint) server.restoreCheckpoint(checkpointFile);
+      server.openJournal(journalFile);
+      server.closeJournal();
+      return server;
+  }
+}
@@ -0,0 +1,103 @@
+package edu.uob;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Commands from players spread over the map, under the world lock (shards = 0) and split into regions.
+// Only scales on a machine with at least as many cores as regions.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ShardedThroughputBenchmark {
+
+  private static final int LOCATIONS = 400;
+  private static final int PLAYERS = 4;
+
+  @Param({"0", "1", "4"})
+  public int shards;
+
+  private GameServer server;
+  private final AtomicInteger nextPlayer = new AtomicInteger();
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+      File directory = Files.createTempDirectory("stag-world").toFile();
+      File entitiesFile = new File(directory, "entities.dot");
+      File actionsFile = new File(directory, "actions.xml");
+      new WorldGenerator(LOCATIONS, 6, 1.0, 200, 0.3, 42).write(entitiesFile, actionsFile);
+      server = new GameServer(entitiesFile, actionsFile);
+      // players stand far apart before any region starts, so each one lands in a different region
+      GameState gameState = server.getGameState();
+      for (int i = 0; i < PLAYERS; i++) {
+          String name = playerName(i);
+          server.handleCommand(name + ": look");
+          Player player = gameState.getPlayer(name);
+          Location start = gameState.getLocation(player.getLocationId());
+          Location destination = gameState.getLocation(WorldGenerator.locationName(i * LOCATIONS / PLAYERS));
+          start.removePlayer(player);
+          player.setLocation(destination.getId());
+          destination.addPlayer(player);
+      }
+      if (shards > 0) server.startShards(shards);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+      server.stopShards();
+  }
+
+  private static String playerName(int index) {
+      return "bench" + (char) ('a' + index);
+  }
+
+  @State(Scope.Thread)
+  public static class Session {
+      String look;
+      String get;
+      String drop;
+
+      @Setup(Level.Trial)
+      public void setup(ShardedThroughputBenchmark benchmark) {
+          int index = benchmark.nextPlayer.getAndIncrement() % PLAYERS;
+          String name = playerName(index);
+          String item = WorldGenerator.entityName(index * LOCATIONS / PLAYERS, 0);
+          look = name + ": look";
+          get = name + ": get " + item;
+          drop = name + ": drop " + item;
+      }
+  }
+
+  // read-only commands, answered from published snapshots without the lock or a region thread
+  @Benchmark
+  public String look(Session session) {
+      return server.handleCommand(session.look);
+  }
+
+  @Benchmark
+  public String lookGetDrop(Session session) {
+      server.handleCommand(session.look);
+      server.handleCommand(session.get);
+      return server.handleCommand(session.drop);
+  }
+}
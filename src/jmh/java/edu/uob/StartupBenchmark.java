@@ -0,0 +1,57 @@
+package edu.uob;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+// Time to construct a GameServer from a large generated world, one cold load per measurement.
+// The dot-parser library itself grows quadratically with file size, which keeps the sizes here modest.
+// loadWorldImage reads the same world from a precompiled image, which skips both parsers.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+
+  @Param({"500", "2000"})
+  public int locations;
+
+  private File entitiesFile;
+  private File actionsFile;
+  private File worldImage;
+
+  @Setup(Level.Trial)
+  public void generateWorld() throws Exception {
+      File directory = Files.createTempDirectory("stag-startup").toFile();
+      entitiesFile = new File(directory, "entities.dot");
+      actionsFile = new File(directory, "actions.xml");
+      worldImage = new File(directory, "world.img");
+      new WorldGenerator(locations, 10, 1.0, locations * 5, 0.3, 42).write(entitiesFile, actionsFile);
+      WorldImage.compile(entitiesFile, actionsFile, worldImage);
+  }
+
+  @Benchmark
+  public GameServer loadWorld() {
+      return new GameServer(entitiesFile, actionsFile);
+  }
+
+  @Benchmark
+  public GameServer loadWorldImage() {
+      return new GameServer(entitiesFile, actionsFile, worldImage);
+  }
+}
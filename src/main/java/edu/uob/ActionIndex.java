@@ -0,0 +1,138 @@
+package edu.uob;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+//actions grouped by trigger, each action's subjects kept as a sorted id array and every subject id
+//pointing at the actions that name it, so matching only visits actions sharing the command's subjects
+//only changed while it is being built, a reload builds a new index and swaps it in whole
+public class ActionIndex {
+    private final SymbolTable symbols;
+    private final HashMap<String, TriggerActions> triggers;
+
+    public ActionIndex(SymbolTable symbols) {
+        this.symbols = symbols;
+        this.triggers = new HashMap<>();
+    }
+
+    //returns true when this is the first action for the trigger
+    public boolean add(String trigger, GameAction action) {
+        TriggerActions triggerActions = this.triggers.get(trigger);
+        boolean added = triggerActions == null;
+        if (added) {
+            triggerActions = new TriggerActions();
+            this.triggers.put(trigger, triggerActions);
+        }
+        triggerActions.add(action, this.toIds(action.getSubjects()));
+        return added;
+    }
+
+    //indexes the action under each of its triggers, returns the triggers it is the first action for
+    public LinkedList<String> addAction(GameAction action) {
+        LinkedList<String> added = new LinkedList<>();
+        for (String phrase : action.getTriggers()) {
+            String trigger = PhraseTrie.canonical(phrase);
+            if (this.add(trigger, action)) added.add(trigger);
+        }
+        return added;
+    }
+
+    public Set<String> getTriggers() {
+        return this.triggers.keySet();
+    }
+
+    public LinkedList<GameAction> getActions(String trigger) {
+        LinkedList<GameAction> actions = new LinkedList<>();
+        TriggerActions triggerActions = this.triggers.get(trigger);
+        if (triggerActions != null) {
+            actions.addAll(Arrays.asList(triggerActions.actions).subList(0, triggerActions.size));
+        }
+        return actions;
+    }
+
+    //the single action whose subjects cover every named subject and whose remaining subjects are all
+    //at hand, or null when none or several actions qualify
+    public GameAction findMatch(String trigger, List<String> subjects, Player player, Location location) {
+        TriggerActions triggerActions = this.triggers.get(trigger);
+        if (triggerActions == null || subjects.isEmpty()) return null;
+        int[] named = new int[subjects.size()];
+        IntList shortest = null;
+        int count = 0;
+        for (String subject : subjects) {
+            int id = this.symbols.id(subject);
+            IntList postings = id == SymbolTable.NONE ? null : triggerActions.postings.get(id);
+            //a subject no action of this trigger mentions can never be matched
+            if (postings == null) return null;
+            named[count++] = id;
+            if (shortest == null || postings.size() < shortest.size()) shortest = postings;
+        }
+        GameAction match = null;
+        for (int i = 0; i < shortest.size(); i++) {
+            int action = shortest.get(i);
+            if (!triggerActions.isMatch(action, named, player, location)) continue;
+            if (match != null) return null;
+            match = triggerActions.actions[action];
+        }
+        return match;
+    }
+
+    private int[] toIds(List<String> subjects) {
+        int[] ids = new int[subjects.size()];
+        int count = 0;
+        for (String subject : subjects) {
+            ids[count++] = this.symbols.intern(subject.trim());
+        }
+        Arrays.sort(ids);
+        int unique = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (unique == 0 || ids[unique - 1] != ids[i]) ids[unique++] = ids[i];
+        }
+        return Arrays.copyOf(ids, unique);
+    }
+
+    private static class TriggerActions {
+        private GameAction[] actions = new GameAction[4];
+        private int[][] subjects = new int[4][];
+        private int size;
+        private final HashMap<Integer, IntList> postings = new HashMap<>();
+
+        void add(GameAction action, int[] subjectIds) {
+            if (this.size == this.actions.length) {
+                this.actions = Arrays.copyOf(this.actions, this.size * 2);
+                this.subjects = Arrays.copyOf(this.subjects, this.size * 2);
+            }
+            this.actions[this.size] = action;
+            this.subjects[this.size] = subjectIds;
+            for (int id : subjectIds) {
+                this.postings.computeIfAbsent(id, key -> new IntList()).add(this.size);
+            }
+            this.size++;
+        }
+
+        //every named subject must belong to the action, every other subject must be at hand
+        boolean isMatch(int action, int[] named, Player player, Location location) {
+            int[] ids = this.subjects[action];
+            for (int id : named) {
+                if (Arrays.binarySearch(ids, id) < 0) return false;
+            }
+            for (int id : ids) {
+                if (contains(named, id)) continue;
+                if (!location.hasArtefact(id) && !location.hasFurniture(id) && !location.hasCharacter(id)
+                        && !player.hasItem(id)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int candidate : values) {
+            if (candidate == value) return true;
+        }
+        return false;
+    }
+}
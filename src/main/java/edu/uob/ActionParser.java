@@ -1,62 +1,93 @@
 package edu.uob;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.LinkedList;
-import java.util.List;
+import java.util.function.Consumer;
 
+//streams the actions file, handing each action on as soon as its closing tag is read
 public class ActionParser {
-    private final LinkedList<GameAction> actions;
+    private final Consumer<GameAction> actions;
 
-    public ActionParser(LinkedList<GameAction> actions) {
+    public ActionParser(Consumer<GameAction> actions) {
         this.actions = actions;
     }
 
+    public ActionParser(LinkedList<GameAction> actions) {
+        this(actions::add);
+    }
+
     public void parseAction(File actionsFile) {
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document document = builder.parse(actionsFile);
-            document.getDocumentElement().normalize();
-            NodeList actionNodes = document.getElementsByTagName("action");
-
-            for (int i = 0; i < actionNodes.getLength(); i++) {
-                Element actionElement = (Element) actionNodes.item(i);
-                this.parseActionElement(actionElement);
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try (InputStream input = new FileInputStream(actionsFile)) {
+            XMLStreamReader reader = factory.createXMLStreamReader(input);
+            try {
+                this.parseDocument(reader);
+            } finally {
+                reader.close();
             }
-        } catch (Exception e) {
-            System.err.println("Error parsing actions file: ");
-            e.printStackTrace();
+        } catch (XMLStreamException e) {
+            int line = e.getLocation() == null ? -1 : e.getLocation().getLineNumber();
+            throw new IllegalStateException(String.format("Error parsing actions file at line %d: %s", line, e.getMessage()), e);
+        } catch (IOException e) {
+            throw new IllegalStateException(String.format("Error reading actions file: %s", e.getMessage()), e);
         }
     }
 
-    private void parseActionElement(Element actionElement) {
-        List<String> triggers = this.parseElements(actionElement, "triggers", "keyphrase");
-        List<String> subjects = this.parseElements(actionElement, "subjects", "entity");
-        List<String> consumed = this.parseElements(actionElement, "consumed", "entity");
-        List<String> produced = this.parseElements(actionElement, "produced", "entity");
-        String narration = (actionElement.getElementsByTagName("narration").item(0)).getTextContent();
-
-        GameAction action = new GameAction(triggers, subjects, consumed, produced, narration);
-        this.actions.add(action);
+    private void parseDocument(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("action")) {
+                this.parseActionElement(reader);
+            }
+        }
     }
 
-    private List<String> parseElements(Element parent, String tagName, String childTag) {
-        LinkedList<String> result = new LinkedList<>();
-        NodeList nodes = parent.getElementsByTagName(tagName);
-        if (nodes.getLength() > 0) {
-            Element element = (Element) nodes.item(0);
-            NodeList childNodes = element.getElementsByTagName(childTag);
-            int index = 0;
-            while (index < childNodes.getLength()) {
-                result.add(childNodes.item(index).getTextContent());
-                index++;
+    private void parseActionElement(XMLStreamReader reader) throws XMLStreamException {
+        int line = reader.getLocation().getLineNumber();
+        LinkedList<String> triggers = new LinkedList<>();
+        LinkedList<String> subjects = new LinkedList<>();
+        LinkedList<String> consumed = new LinkedList<>();
+        LinkedList<String> produced = new LinkedList<>();
+        LinkedList<String> section = null;
+        String narration = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("action")) {
+                break;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) continue;
+            switch (reader.getLocalName()) {
+                case "triggers": section = triggers; break;
+                case "subjects": section = subjects; break;
+                case "consumed": section = consumed; break;
+                case "produced": section = produced; break;
+                case "keyphrase":
+                case "entity":
+                    if (section == null) throw this.malformed(reader, "<" + reader.getLocalName() + "> outside of a section");
+                    section.add(reader.getElementText().trim());
+                    break;
+                case "narration": narration = reader.getElementText(); break;
+                default: throw this.malformed(reader, "unexpected element <" + reader.getLocalName() + ">");
             }
         }
-        return result;
+        if (triggers.isEmpty()) throw this.malformed(line, "action has no trigger keyphrase");
+        if (narration == null) throw this.malformed(line, "action has no narration");
+        this.actions.accept(new GameAction(triggers, subjects, consumed, produced, narration));
+    }
+
+    private IllegalStateException malformed(XMLStreamReader reader, String reason) {
+        return this.malformed(reader.getLocation().getLineNumber(), reason);
+    }
+
+    private IllegalStateException malformed(int line, String reason) {
+        return new IllegalStateException(String.format("Malformed action at line %d: %s", line, reason));
     }
-}
\ No newline at end of file
+}
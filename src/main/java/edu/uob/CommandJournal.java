@@ -0,0 +1,278 @@
+package edu.uob;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+//append-only log of every command a writer applied that can change the world, written before the
+//command is applied and replayed over the freshly loaded world on restart
+//record: payload length, crc of sequence and payload, sequence number, then the command in UTF-8
+//writers only copy their record into a buffer, one flusher thread writes whatever has built up and
+//forces it to disk in a single fsync, so many commands share each group commit
+//a checkpoint rotates the journal: the records it covers move to a previous segment, deleted once the
+//checkpoint is safely written, and the journal starts again empty
+public class CommandJournal implements Closeable {
+    private static final int RECORD_HEADER = 4 + 4 + 8;
+    private static final int MAX_RECORD = 1 << 20;
+
+    private final File file;
+    //swapped by rotate(), the flusher only picks it up after taking the lock for its next batch
+    private FileChannel channel;
+    private final Thread flusher;
+    private final ArrayDeque<Waiter> waiters;
+    private ByteBuffer pending;
+    private ByteBuffer flushing;
+    private long appended;
+    //read without the lock by snapshot reads, only written under it
+    private volatile long durable;
+    private IOException failure;
+    private boolean closed;
+
+    private CommandJournal(File file, FileChannel channel, long lastSequence) {
+        this.file = file;
+        this.channel = channel;
+        this.waiters = new ArrayDeque<>();
+        this.pending = ByteBuffer.allocate(64 * 1024);
+        this.flushing = ByteBuffer.allocate(64 * 1024);
+        this.appended = lastSequence;
+        this.durable = lastSequence;
+        this.flusher = new Thread(this::flushLoop, "stag-journal");
+        this.flusher.setDaemon(true);
+    }
+
+    //appending resumes after lastSequence, which replay() reports for an existing journal
+    public static CommandJournal open(File file, long lastSequence) throws IOException {
+        CommandJournal journal = new CommandJournal(file, openForAppend(file), lastSequence);
+        journal.flusher.start();
+        return journal;
+    }
+
+    private static FileChannel openForAppend(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    //where rotate() moves the records a checkpoint is about to cover
+    public static File previousSegment(File file) {
+        return new File(file.getPath() + ".prev");
+    }
+
+    //applies every intact record with a sequence above afterSequence, in order, then cuts a torn or
+    //corrupt tail off the file so new records follow the last good one, returns the last sequence read
+    public static long replay(File file, long afterSequence, Consumer<String> apply) throws IOException {
+        if (!file.isFile()) return afterSequence;
+        long lastSequence = afterSequence;
+        long validLength = 0;
+        CRC32 crc = new CRC32();
+        ByteBuffer sequenceBytes = ByteBuffer.allocate(8);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                int checksum;
+                long sequence;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    if (length < 0 || length > MAX_RECORD) break;
+                    checksum = in.readInt();
+                    sequence = in.readLong();
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                sequenceBytes.clear();
+                crc.update(sequenceBytes.putLong(sequence).array());
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) break;
+                if (sequence > afterSequence) {
+                    apply.accept(new String(payload, StandardCharsets.UTF_8));
+                }
+                lastSequence = Math.max(lastSequence, sequence);
+                validLength += RECORD_HEADER + length;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            if (channel.size() > validLength) channel.truncate(validLength);
+        }
+        return lastSequence;
+    }
+
+    //returns the record's sequence number, which is durable once whenDurable(sequence) completes
+    public synchronized long append(String command) {
+        if (this.closed) throw new IllegalStateException("Journal is closed");
+        if (this.failure != null) throw new IllegalStateException("Journal write failed", this.failure);
+        byte[] payload = command.getBytes(StandardCharsets.UTF_8);
+        long sequence = this.appended + 1;
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putLong(sequence).array());
+        crc.update(payload);
+        if (this.pending.remaining() < RECORD_HEADER + payload.length) {
+            this.pending = grow(this.pending, RECORD_HEADER + payload.length);
+        }
+        this.pending.putInt(payload.length).putInt((int) crc.getValue()).putLong(sequence).put(payload);
+        this.appended = sequence;
+        this.notifyAll();
+        return sequence;
+    }
+
+    //called while no writer appends: waits for everything appended to be durable, then moves the
+    //journal to its previous segment and starts a new one, returns false without rotating while the
+    //previous segment is still waiting for a checkpoint that covers it
+    public synchronized boolean rotate() throws IOException {
+        File previous = previousSegment(this.file);
+        if (previous.exists()) return false;
+        while (this.durable < this.appended && this.failure == null) {
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for the journal to flush", e);
+            }
+        }
+        if (this.failure != null) throw new IOException("Journal write failed", this.failure);
+        try {
+            this.channel.close();
+            Files.move(this.file.toPath(), previous.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            this.channel = openForAppend(this.file);
+        } catch (IOException e) {
+            this.failure = e;
+            throw e;
+        }
+        return true;
+    }
+
+    //once a checkpoint covering the previous segment is written its records are never replayed again
+    public void deletePrevious() throws IOException {
+        Files.deleteIfExists(previousSegment(this.file).toPath());
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    public synchronized long getLastSequence() {
+        return this.appended;
+    }
+
+    public long getDurableSequence() {
+        return this.durable;
+    }
+
+    public synchronized CompletableFuture<Void> whenDurable(long sequence) {
+        if (this.durable >= sequence) return CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (this.failure != null) {
+            done.completeExceptionally(this.failure);
+        } else {
+            this.waiters.add(new Waiter(sequence, done));
+        }
+        return done;
+    }
+
+    public void awaitDurable(long sequence) {
+        try {
+            this.whenDurable(sequence).join();
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Journal write failed", e);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long target;
+            FileChannel out;
+            synchronized (this) {
+                while (this.pending.position() == 0 && !this.closed) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (this.pending.position() == 0) return;
+                //swap buffers, writers carry on filling the other one while this batch is on its way out
+                ByteBuffer batch = this.pending;
+                this.pending = this.flushing;
+                this.flushing = batch;
+                target = this.appended;
+                out = this.channel;
+            }
+            try {
+                this.flushing.flip();
+                while (this.flushing.hasRemaining()) {
+                    out.write(this.flushing);
+                }
+                out.force(false);
+                this.flushing.clear();
+                this.markDurable(target);
+            } catch (IOException e) {
+                this.fail(e);
+                return;
+            }
+        }
+    }
+
+    private synchronized void markDurable(long sequence) {
+        this.durable = sequence;
+        this.notifyAll();
+        this.waiters.removeIf(waiter -> {
+            if (waiter.sequence > sequence) return false;
+            waiter.done.complete(null);
+            return true;
+        });
+    }
+
+    private synchronized void fail(IOException e) {
+        this.failure = e;
+        this.notifyAll();
+        for (Waiter waiter : this.waiters) {
+            waiter.done.completeExceptionally(e);
+        }
+        this.waiters.clear();
+    }
+
+    //flushes what has been appended so far, then closes the file
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            this.closed = true;
+            this.notifyAll();
+        }
+        try {
+            this.flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.channel.close();
+    }
+
+    private static class Waiter {
+        private final long sequence;
+        private final CompletableFuture<Void> done;
+
+        Waiter(long sequence, CompletableFuture<Void> done) {
+            this.sequence = sequence;
+            this.done = done;
+        }
+    }
+}
@@ -5,8 +5,19 @@ import java.util.LinkedList;
 
 public class CommandProcessor {
     private final GameState gameState;
+    //every command a writer applies that can change the world is appended here, so a restart can replay it
+    private volatile CommandJournal journal;
+    //recorded on every command, read only when the metrics are rendered
+    private final ServerMetrics metrics = new ServerMetrics();
+    //each connection thread tokenises into its own buffers
+    private static final ThreadLocal<CommandTokenizer> TOKENIZER = ThreadLocal.withInitial(CommandTokenizer::new);
     private static final LinkedList<String> BUILT_IN_COMMANDS = new LinkedList<>();
+    private static final LinkedList<String> READ_ONLY_COMMANDS = new LinkedList<>();
     static {
+        READ_ONLY_COMMANDS.add("inventory");
+        READ_ONLY_COMMANDS.add("inv");
+        READ_ONLY_COMMANDS.add("look");
+        READ_ONLY_COMMANDS.add("health");
         BUILT_IN_COMMANDS.add("inventory");
         BUILT_IN_COMMANDS.add("inv");
         BUILT_IN_COMMANDS.add("get");
@@ -18,70 +29,152 @@ public class CommandProcessor {
 
     public CommandProcessor(GameState gameState) {
         this.gameState = gameState;
+        for (String builtInCommand : BUILT_IN_COMMANDS) {
+            this.gameState.getVocabulary().addTrigger(builtInCommand);
+        }
     }
 
     public String processCommand(String command) {
-        WholeCommand wholeCommand = this.parseCommand(command);
-        if (wholeCommand == null) return "Missing valid trigger";
+        long start = System.nanoTime();
+        CommandTokenizer tokens = TOKENIZER.get();
+        if (!tokens.tokenise(command)) {
+            this.metrics.countCommand("invalid", System.nanoTime() - start);
+            return "Missing valid trigger";
+        }
+        long parsed = System.nanoTime();
+        this.metrics.record(ServerMetrics.Stage.PARSE, parsed - start);
+
+        //the record goes in before the command is applied, so no snapshot it publishes is ahead of the
+        //journal, and a new player changes the world even when the command only reads it
+        CommandJournal log = this.journal;
+        boolean joining = this.gameState.getPlayer(tokens.getPlayerName()) == null;
+        if (log != null && joining) this.gameState.setJournalSequence(log.append(command));
+        Player player = this.checkPlayerExists(tokens.getPlayerName());
+        CommandContext context = this.buildCommand(player, tokens);
+        this.metrics.record(ServerMetrics.Stage.BUILD, System.nanoTime() - parsed);
+        if (log != null && !joining && changesWorld(context.trigger)) {
+            this.gameState.setJournalSequence(log.append(command));
+        }
 
-        Player player = this.checkPlayerExists(wholeCommand.playerName);
-        CommandContext context = this.buildCommand(player, wholeCommand.commandWords);
+        String reply = this.processCommand(context);
+        this.metrics.countCommand(typeOf(context.trigger), System.nanoTime() - start);
+        return reply;
+    }
 
-        return this.processCommand(context);
+    //look, inv, health and commands without a trigger leave the world as it was, so replay skips them
+    private static boolean changesWorld(String trigger) {
+        return trigger != null && !READ_ONLY_COMMANDS.contains(trigger);
     }
 
-    private Player checkPlayerExists(String playerName) {
-        Player player = this.gameState.getPlayer(playerName);
-        if (player == null) {
-            this.gameState.addPlayer(playerName);
-            player = this.gameState.getPlayer(playerName);
-        }
-        return player;
+    private static String typeOf(String trigger) {
+        if (trigger == null) return "invalid";
+        return BUILT_IN_COMMANDS.contains(trigger) ? trigger : "action";
+    }
+
+    public ServerMetrics getMetrics() {
+        return this.metrics;
     }
 
-    private LinkedList<String> splitCommand(String commandText) {
-        LinkedList<String> commandWords = new LinkedList<>();
-        for (String commandWord : commandText.split("\\s+")) {
-            if (!commandWord.isEmpty()) commandWords.add(commandWord);
+    void setJournal(CommandJournal journal) {
+        this.journal = journal;
+    }
+
+    //new triggers are recognised before the swap and dropped ones only after it, built-in commands
+    //always stay. A command can still scan the vocabulary on one side of the swap and read the index
+    //on the other, so it may find a trigger with no actions, which determineActionError reports
+    void replaceActions(ActionIndex actions) {
+        Vocabulary vocabulary = this.gameState.getVocabulary();
+        ActionIndex current = this.gameState.getActionIndex();
+        for (String trigger : actions.getTriggers()) {
+            if (!current.getTriggers().contains(trigger)) vocabulary.addTrigger(trigger);
+        }
+        this.gameState.replaceActions(actions);
+        for (String trigger : current.getTriggers()) {
+            if (!actions.getTriggers().contains(trigger) && !BUILT_IN_COMMANDS.contains(trigger)) {
+                vocabulary.removeTrigger(trigger);
+            }
         }
-        return commandWords;
     }
 
-    private WholeCommand parseCommand(String command) {
-        int splitedIndex = command.indexOf(": ");
+    //answers look, inv and health from the snapshots writers last published, without the world lock or
+    //the writer queue. Null when the command has to be applied by a writer: it changes the world, its
+    //player is new, a snapshot it needs has not been republished since the last change, or a snapshot
+    //it needs shows a journal record that is not durable yet
+    public String processRead(String command) {
+        long start = System.nanoTime();
+        CommandTokenizer tokens = TOKENIZER.get();
+        if (!tokens.tokenise(command) || !this.mentionsReadOnlyCommand(tokens)) return null;
+        Player player = this.gameState.getPlayer(tokens.getPlayerName());
+        if (player == null) return null;
+        CommandContext context = this.buildCommand(player, tokens);
+        String trigger = context.trigger;
+        if (trigger == null || !READ_ONLY_COMMANDS.contains(trigger)) return null;
+        //every change a snapshot shows was appended at or before the sequence it was published with
+        CommandJournal log = this.journal;
+        String reply = this.answerRead(context, log == null ? Long.MAX_VALUE : log.getDurableSequence());
+        if (reply != null) this.metrics.countCommand(trigger, System.nanoTime() - start);
+        return reply;
+    }
 
-        String playerName = command.substring(0, splitedIndex);
-        if (!playerName.matches("[a-zA-Z\\s'-]+")) return null;
+    private String answerRead(CommandContext context, long durableSequence) {
+        String trigger = context.trigger;
+        Player player = context.player;
+        if (!context.subjects.isEmpty()) return this.buildErrorMessage(trigger, "takes no subjects");
+        if (trigger.equals("look")) return this.gameState.lookSnapshot(player, durableSequence);
+        Player.Snapshot snapshot = player.getSnapshot();
+        if (snapshot == null || snapshot.sequence > durableSequence) return null;
+        if (trigger.equals("health")) {
+            if (context.hasPlayerName) return this.buildErrorMessage(trigger, "cannot with player names");
+            return String.valueOf(snapshot.health);
+        }
+        return snapshot.inventory;
+    }
 
-        StringBuilder commandString = new StringBuilder();
-        commandString.append(command.substring(splitedIndex + 2).trim().toLowerCase());
-        String commandText = commandString.toString();
+    //cheap filter on the word spans, so commands that change the world skip the vocabulary scan here
+    private boolean mentionsReadOnlyCommand(CommandTokenizer tokens) {
+        String source = tokens.getSource();
+        for (int i = 0; i < tokens.size(); i++) {
+            int length = tokens.end(i) - tokens.start(i);
+            for (String readOnly : READ_ONLY_COMMANDS) {
+                if (readOnly.length() == length && source.regionMatches(true, tokens.start(i), readOnly, 0, length)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 
-        LinkedList<String> commandWords = this.splitCommand(commandText);
-        if (commandWords.isEmpty()) {
-            return null;
-        } else {
-            return new WholeCommand(playerName, commandWords);
+    //only tokenises, so any thread can reject a malformed command without touching the world
+    static boolean isWellFormed(String command) {
+        return TOKENIZER.get().tokenise(command);
+    }
+
+    private Player checkPlayerExists(String playerName) {
+        Player player = this.gameState.getPlayer(playerName);
+        if (player == null) {
+            this.gameState.addPlayer(playerName);
+            player = this.gameState.getPlayer(playerName);
         }
+        return player;
     }
 
-    private CommandContext buildCommand(Player player, LinkedList<String> commandWords) {
-        LinkedList<String> allTriggers = this.gameState.getAllTriggers();
-        LinkedList<String> allEntities = this.gatherAllEntities();
-        LinkedList<String> allPlayerNames = this.gatherAllPlayerNames();
-        LinkedList<String> allKeywords = this.buildAllKeywords(allTriggers, allEntities);
-        String trigger = this.findTrigger(commandWords, allTriggers);
-        LinkedList<String> subjects = this.extractSubjects(commandWords, trigger, allEntities);
-        boolean hasPlayerName = this.isPlayerNameContained(commandWords, allPlayerNames);
+    CommandContext buildCommand(Player player, CommandTokenizer tokens) {
+        LinkedList<PhraseTrie.Match> matches = this.gameState.getVocabulary().scan(tokens);
+        String trigger = this.findTrigger(matches);
+        LinkedList<String> subjects = this.extractSubjects(matches, trigger);
+        boolean hasPlayerName = this.isPlayerNameContained(matches);
 
-        return new CommandContext(player, hasPlayerName, commandWords, trigger, subjects, allKeywords);
+        return new CommandContext(player, hasPlayerName, trigger, subjects);
     }
 
     private String processCommand(CommandContext context) {
         if (context.trigger == null) return "No valid trigger found";
 
         if (BUILT_IN_COMMANDS.contains(context.trigger)) {
-            return this.processBuiltInCommand(context);
+            long start = System.nanoTime();
+            String reply = this.processBuiltInCommand(context);
+            this.metrics.record(ServerMetrics.Stage.EXECUTE, System.nanoTime() - start);
+            return reply;
         }
         return this.processCustomAction(context);
     }
@@ -115,81 +208,33 @@ public class CommandProcessor {
         return "Unknown command";
     }
 
-    private LinkedList<String> gatherAllEntities() {
-        LinkedList<String> allEntities = new LinkedList<>();
-        for (Location currentLocation: this.gameState.getLocations().values()) {
-            this.addEntitiesFromLocation(currentLocation, allEntities);
-        }
-        for (Player player : this.gameState.getPlayers().values()) {
-            allEntities.add(player.getName().toLowerCase());
-            for (GameEntity item : player.getInventoryEntities()) {
-                allEntities.add(item.getName().toLowerCase());
-            }
-        }
-        allEntities.add("health");
-        return allEntities;
-    }
-
-    //to gather all entities to identify available
-    private void addEntitiesFromLocation(Location currentLocation, LinkedList<String> entities) {
-        for (GameEntity artefact : currentLocation.getEntities("artefacts")) {
-            entities.add(artefact.getName().toLowerCase());
-        }
-        for (GameEntity furniture : currentLocation.getEntities("furniture")) {
-            entities.add(furniture.getName().toLowerCase());
-        }
-        for (GameEntity character : currentLocation.getEntities("characters")) {
-            entities.add(character.getName().toLowerCase());
-        }
-        entities.add(currentLocation.getName().toLowerCase());
-    }
-
-    private LinkedList<String> gatherAllPlayerNames() {
-        LinkedList<String> allPlayerNames = new LinkedList<>();
-        for (Player player : this.gameState.getPlayers().values()) {
-            allPlayerNames.add(player.getName().toLowerCase());
-        }
-        return allPlayerNames;
-    }
-
-    private LinkedList<String> buildAllKeywords(LinkedList<String> allTriggers, LinkedList<String> allEntities) {
-        LinkedList<String> allKeywords = new LinkedList<>();
-        Iterator<String> builtInIter = BUILT_IN_COMMANDS.iterator();
-        while (builtInIter.hasNext()) {
-            allKeywords.add(builtInIter.next());
-        }
-        allKeywords.addAll(allTriggers);
-        allKeywords.addAll(allEntities);
-        return allKeywords;
-    }
-
-    private String findTrigger(LinkedList<String> words, LinkedList<String> allTriggers) {
-        for (String word : words) {
-            if (BUILT_IN_COMMANDS.contains(word) || allTriggers.contains(word)) {
-                return word;
+    private String findTrigger(LinkedList<PhraseTrie.Match> matches) {
+        for (PhraseTrie.Match match : matches) {
+            if (match.is(PhraseTrie.TRIGGER)) {
+                return match.phrase;
             }
         }
         return null;
     }
 
     //to check if there are more than one subject
-    private LinkedList<String> extractSubjects(LinkedList<String> words, String trigger, LinkedList<String> allEntities) {
+    private LinkedList<String> extractSubjects(LinkedList<PhraseTrie.Match> matches, String trigger) {
         LinkedList<String> subjects = new LinkedList<>();
-        Iterator<String> wordIter = words.iterator();
-        while (wordIter.hasNext()) {
-            String word = wordIter.next();
-            if (!word.equals(trigger) && allEntities.contains(word)) {
-                subjects.add(word);
+        Iterator<PhraseTrie.Match> matchIter = matches.iterator();
+        while (matchIter.hasNext()) {
+            PhraseTrie.Match match = matchIter.next();
+            if (!match.phrase.equals(trigger) && match.is(PhraseTrie.ENTITY | PhraseTrie.LOCATION | PhraseTrie.PLAYER)) {
+                subjects.add(match.phrase);
             }
         }
         return subjects;
     }
 
     //check for not interact with other player
-    private boolean isPlayerNameContained(LinkedList<String> words, LinkedList<String> allPlayerNames) {
-        Iterator<String> wordIter = words.iterator();
-        while (wordIter.hasNext()) {
-            if (allPlayerNames.contains(wordIter.next())) {
+    private boolean isPlayerNameContained(LinkedList<PhraseTrie.Match> matches) {
+        Iterator<PhraseTrie.Match> matchIter = matches.iterator();
+        while (matchIter.hasNext()) {
+            if (matchIter.next().is(PhraseTrie.PLAYER)) {
                 return true;
             }
         }
@@ -200,11 +245,17 @@ public class CommandProcessor {
         if (context.subjects.isEmpty() && !BUILT_IN_COMMANDS.contains(context.trigger)) {
             return this.buildErrorMessage(context.trigger, "must input at least one subject");
         }
-        GameAction action = this.findMatchingAction(context.player, context.trigger, context.subjects);
+        ActionIndex actions = this.gameState.getActionIndex();
+        long start = System.nanoTime();
+        GameAction action = this.findMatchingAction(actions, context.player, context.trigger, context.subjects);
+        long matched = System.nanoTime();
+        this.metrics.record(ServerMetrics.Stage.MATCH, matched - start);
         if (action == null) {
-            return this.determineActionError(context.trigger, context.subjects);
+            return this.determineActionError(actions, context.trigger, context.subjects);
         }
-        return this.gameState.executeAction(context.player.getName(), action);
+        String reply = this.gameState.executeAction(context.player.getName(), action);
+        this.metrics.record(ServerMetrics.Stage.EXECUTE, System.nanoTime() - matched);
+        return reply;
     }
 
     private String buildErrorMessage(String trigger, String reason) {
@@ -214,13 +265,12 @@ public class CommandProcessor {
     }
 
 
-    private String determineActionError(String trigger, LinkedList<String> subjects) {
+    private String determineActionError(ActionIndex actions, String trigger, LinkedList<String> subjects) {
         StringBuilder errorString = new StringBuilder();
-        LinkedList<GameAction> possibleActions = this.gameState.getActionsByTrigger(trigger);
+        LinkedList<GameAction> possibleActions = actions.getActions(trigger);
         if (possibleActions.isEmpty()) {
             errorString.append("No matching action found for '").append(trigger).append("'");
-        }
-        if (possibleActions.size() > 1) {
+        } else if (possibleActions.size() > 1) {
             errorString.append("Ambiguous command: multiple actions match '").append(trigger).append("'");
         } else {
             GameAction potentialAction = possibleActions.getFirst();
@@ -242,79 +292,26 @@ public class CommandProcessor {
     }
 
     // Helper method to find matching action
-    private GameAction findMatchingAction(Player player, String trigger, LinkedList<String> subjects) {
-        LinkedList<GameAction> matches = new LinkedList<>();
-        Location currentLocation = gameState.getLocation(player.getLocation());
-        LinkedList<GameAction> possibleActions = gameState.getActionsByTrigger(trigger);
-
-        for (GameAction action : possibleActions) {
-            if (isActionMatch(action, player, currentLocation, subjects)) {
-                matches.add(action);
-            }
-        }
-
-        if (matches.isEmpty()) {
-            return null;
-        }
-        if (matches.size() > 1) return null; // Ambiguous command
-        return matches.getFirst();
-    }
-
-    private boolean isActionMatch(GameAction action, Player player, Location location, LinkedList<String> subjects) {
-        LinkedList<String> actionSubjects = new LinkedList<>(action.getSubjects());
-        boolean atLeastOneSubjectPresent = false;
-        for (String subject : subjects) {
-            if (actionSubjects.contains(subject)) {
-                atLeastOneSubjectPresent = true;
-                break;
-            }
-        }
-        if (!atLeastOneSubjectPresent) return false;
-
-        boolean allSubjectsAvailable = true;
-        for (String subject : actionSubjects) {
-            if (!subjects.contains(subject) &&
-                    !location.hasArtefact(subject) &&
-                    !location.hasFurniture(subject) &&
-                    !location.hasCharacter(subject) &&
-                    !player.hasItem(subject)) {
-                allSubjectsAvailable = false;
-                break;
-            }
-        }
-        if (!allSubjectsAvailable) return false;
-
-
-        LinkedList<String> extraSubjects = new LinkedList<>(subjects);
-        extraSubjects.removeAll(actionSubjects);
-        return extraSubjects.isEmpty();
+    GameAction findMatchingAction(Player player, String trigger, LinkedList<String> subjects) {
+        return this.findMatchingAction(this.gameState.getActionIndex(), player, trigger, subjects);
     }
 
-    public class WholeCommand {
-        public final String playerName;
-        public final LinkedList<String> commandWords;
-
-        public WholeCommand(String playerName, LinkedList<String> commandWords) {
-            this.playerName = playerName;
-            this.commandWords = commandWords;
-        }
+    private GameAction findMatchingAction(ActionIndex actions, Player player, String trigger, LinkedList<String> subjects) {
+        Location currentLocation = gameState.getLocation(player.getLocationId());
+        return actions.findMatch(trigger, subjects, player, currentLocation);
     }
 
     public class CommandContext {
         public final Player player;
         public final boolean hasPlayerName;
-        public final LinkedList<String> commandWords;
         public final String trigger;
         public final LinkedList<String> subjects;
-        public final LinkedList<String> allKeywords;
 
-        public CommandContext(Player player, boolean hasPlayerName, LinkedList<String> commandWords, String trigger, LinkedList<String> subjects, LinkedList<String> allKeywords) {
+        public CommandContext(Player player, boolean hasPlayerName, String trigger, LinkedList<String> subjects) {
             this.player = player;
             this.hasPlayerName = hasPlayerName;
-            this.commandWords = commandWords;
             this.trigger = trigger;
             this.subjects = subjects;
-            this.allKeywords = allKeywords;
         }
     }
 }
@@ -0,0 +1,89 @@
+package edu.uob;
+
+import java.util.Arrays;
+
+//single pass over "<player>: <command>", checking the player name and recording each word as a span
+//of the original string, the spans live in buffers reused from one command to the next
+public class CommandTokenizer {
+    private String source;
+    private int nameEnd;
+    private int[] starts;
+    private int[] ends;
+    private int size;
+
+    public CommandTokenizer() {
+        this.starts = new int[16];
+        this.ends = new int[16];
+    }
+
+    //false when there is no "name: " prefix, the name has characters other than letters, spaces,
+    //apostrophes and hyphens, or the command has no words
+    public boolean tokenise(String command) {
+        this.source = command;
+        this.size = 0;
+        this.nameEnd = -1;
+        int length = command.length();
+        for (int i = 0; i + 1 < length; i++) {
+            char c = command.charAt(i);
+            if (c == ':' && command.charAt(i + 1) == ' ') {
+                this.nameEnd = i;
+                break;
+            }
+            if (!isNameCharacter(c)) return false;
+        }
+        if (this.nameEnd <= 0) return false;
+        int index = this.nameEnd + 2;
+        while (index < length) {
+            while (index < length && isSpace(command.charAt(index))) index++;
+            if (index == length) break;
+            int start = index;
+            while (index < length && !isSpace(command.charAt(index))) index++;
+            this.addSpan(start, index);
+        }
+        return this.size > 0;
+    }
+
+    private void addSpan(int start, int end) {
+        if (this.size == this.starts.length) {
+            this.starts = Arrays.copyOf(this.starts, this.size * 2);
+            this.ends = Arrays.copyOf(this.ends, this.size * 2);
+        }
+        this.starts[this.size] = start;
+        this.ends[this.size] = end;
+        this.size++;
+    }
+
+    private static boolean isNameCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '\'' || c == '-' || isSpace(c);
+    }
+
+    //the same characters as \s in a regex
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    public String getPlayerName() {
+        return this.source.substring(0, this.nameEnd);
+    }
+
+    public String getSource() {
+        return this.source;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int start(int index) {
+        return this.starts[index];
+    }
+
+    public int end(int index) {
+        return this.ends[index];
+    }
+
+    //only for callers that need the word itself, matching against the vocabulary works on the spans
+    public String word(int index) {
+        return this.source.substring(this.starts[index], this.ends[index]).toLowerCase();
+    }
+}
@@ -0,0 +1,115 @@
+package edu.uob;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+//accepts connections on its own thread and hands every socket to a worker pool
+//a connection that sends nothing for the read timeout is closed, so idle clients cannot hold every
+//worker of a bounded pool while new connections wait in its queue
+public class ConnectionAcceptor implements Closeable {
+    private static final int READ_TIMEOUT_MILLIS = 30000;
+
+    private final GameServer server;
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers;
+    private final int readTimeoutMillis;
+    private final Thread acceptThread;
+
+    public ConnectionAcceptor(GameServer server, int portNumber, ExecutorService workers) throws IOException {
+        this(server, portNumber, workers, READ_TIMEOUT_MILLIS);
+    }
+
+    public ConnectionAcceptor(GameServer server, int portNumber, ExecutorService workers, int readTimeoutMillis)
+            throws IOException {
+        this.server = server;
+        this.serverSocket = new ServerSocket(portNumber);
+        this.workers = workers;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.acceptThread = new Thread(this::acceptLoop, "stag-acceptor");
+    }
+
+    //virtual threads where the runtime has them (JDK 21+), otherwise a bounded platform pool
+    public static ExecutorService newWorkerPool(int poolSize) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(poolSize * 64));
+        }
+    }
+
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    public void start() {
+        this.acceptThread.start();
+    }
+
+    public void join() throws InterruptedException {
+        this.acceptThread.join();
+    }
+
+    private void acceptLoop() {
+        while (!this.serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = this.serverSocket.accept();
+            } catch (SocketException e) {
+                break;
+            } catch (IOException e) {
+                ServerLog.get().debug("Connection closed");
+                continue;
+            }
+            this.dispatch(socket);
+        }
+    }
+
+    private void dispatch(Socket socket) {
+        try {
+            socket.setSoTimeout(this.readTimeoutMillis);
+        } catch (SocketException e) {
+            this.closeQuietly(socket);
+            return;
+        }
+        try {
+            this.workers.execute(() -> this.serve(socket));
+        } catch (RejectedExecutionException e) {
+            ServerLog.get().warn("Connection rejected, server is at capacity", null);
+            this.closeQuietly(socket);
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            this.server.serveConnection(socket);
+        } catch (IOException e) {
+            ServerLog.get().debug("Connection closed");
+        }
+    }
+
+    private void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            ServerLog.get().debug("Connection closed");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+        this.workers.shutdown();
+    }
+}
@@ -0,0 +1,178 @@
+package edu.uob;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.function.Consumer;
+
+//watches the entities and actions files and applies their changes to the running world, on its own
+//thread so nothing is parsed on the command path
+// - actions: the file is parsed into a complete new index, which replaces the live one while writers
+//   are paused, which costs as long as the trigger updates the swap needs
+// - entities: the file is compared with its previous version and only what was added to it, new
+//   locations, entities and paths, is put into the world, so where players and items have moved to
+//   is left alone. The additions are applied while writers are paused, which costs as long as the
+//   handful of map inserts the change needs
+//the first previous version is taken from the world as loaded, so the reloader must be created before
+//a checkpoint or the journal changes it
+public class ContentReloader implements Closeable {
+    private final GameState gameState;
+    private final CommandProcessor processor;
+    private final File entitiesFile;
+    private final File actionsFile;
+    //runs a change to the world while no command is being applied
+    private final Consumer<Runnable> pause;
+    private final WatchService watcher;
+    private final Thread thread;
+    //what the entities file held when it was last read
+    private HashSet<String> knownEntities;
+    private HashMap<String, LinkedList<String>> knownPaths;
+
+    public ContentReloader(GameState gameState, CommandProcessor processor, File entitiesFile, File actionsFile,
+                           Consumer<Runnable> pause) throws IOException {
+        this.gameState = gameState;
+        this.processor = processor;
+        this.entitiesFile = entitiesFile.getAbsoluteFile();
+        this.actionsFile = actionsFile.getAbsoluteFile();
+        this.pause = pause;
+        this.remember(gameState);
+        this.watcher = FileSystems.getDefault().newWatchService();
+        this.register(this.entitiesFile);
+        this.register(this.actionsFile);
+        this.thread = new Thread(this::watch, "stag-reload");
+        this.thread.setDaemon(true);
+    }
+
+    private void register(File file) throws IOException {
+        file.getParentFile().toPath().register(this.watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    public void start() {
+        this.thread.start();
+    }
+
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = this.watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            //an editor saving a file can raise several events, each file is reloaded once per batch
+            boolean entities = false;
+            boolean actions = false;
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    entities = true;
+                    actions = true;
+                    continue;
+                }
+                File changed = directory.resolve((Path) event.context()).toFile();
+                if (changed.equals(this.entitiesFile)) entities = true;
+                if (changed.equals(this.actionsFile)) actions = true;
+            }
+            key.reset();
+            //the file may still be half written, the event for the rest of it brings the next attempt
+            if (entities) this.reloadQuietly(this::reloadEntities);
+            if (actions) this.reloadQuietly(this::reloadActions);
+        }
+    }
+
+    //a reload that fails for any reason is logged and the watcher carries on, so the next save is tried
+    private void reloadQuietly(Runnable reload) {
+        try {
+            reload.run();
+        } catch (RuntimeException e) {
+            ServerLog.get().warn("Reload failed", e.toString());
+        }
+    }
+
+    //parses the actions file into a new index and swaps it in, commands in flight finish on the old one
+    public void reloadActions() {
+        ActionIndex actions = new ActionIndex(this.gameState.getSymbols());
+        new ActionParser(actions::addAction).parseAction(this.actionsFile);
+        this.pause.accept(() -> this.processor.replaceActions(actions));
+    }
+
+    //adds what the entities file gained since it was last read: locations, entities and paths
+    public void reloadEntities() {
+        GameState updated = new EntityParser().parseWorld(this.entitiesFile);
+        HashSet<String> knownEntities = this.knownEntities;
+        HashMap<String, LinkedList<String>> knownPaths = this.knownPaths;
+        this.pause.accept(() -> {
+            for (Location source : updated.getLocations().values()) {
+                Location target = this.gameState.getLocation(source.getName());
+                if (target == null) {
+                    this.gameState.addLocation(source.getName(), source.getDescription());
+                    target = this.gameState.getLocation(source.getName());
+                }
+                addNewEntities(source.getEntities("artefacts"), knownEntities, target::addArtefact);
+                addNewEntities(source.getEntities("furniture"), knownEntities, target::addFurniture);
+                addNewEntities(source.getEntities("characters"), knownEntities, target::addCharacter);
+                LinkedList<String> previousPaths = knownPaths.getOrDefault(source.getName(), new LinkedList<>());
+                for (String path : source.getPathNames()) {
+                    if (!previousPaths.contains(path) && !target.hasPath(path)) target.addPath(path);
+                }
+                target.publish(this.gameState.getJournalSequence());
+            }
+        });
+        this.remember(updated);
+    }
+
+    //the entity names and paths the world holds, carried items included
+    private void remember(GameState world) {
+        HashSet<String> names = new HashSet<>();
+        HashMap<String, LinkedList<String>> paths = new HashMap<>();
+        for (Location location : world.getLocations().values()) {
+            for (String type : new String[] {"artefacts", "furniture", "characters"}) {
+                for (GameEntity entity : location.getEntities(type)) {
+                    names.add(entity.getName());
+                }
+            }
+            paths.put(location.getName(), location.getPathNames());
+        }
+        for (Player player : world.getPlayers().values()) {
+            for (GameEntity item : player.getInventoryEntities()) {
+                names.add(item.getName());
+            }
+        }
+        this.knownEntities = names;
+        this.knownPaths = paths;
+    }
+
+    //an entity the previous file already had may have been picked up, used or moved since, so only
+    //names the previous file never mentioned are placed
+    private static void addNewEntities(LinkedList<GameEntity> entities, HashSet<String> known, Consumer<GameEntity> add) {
+        for (GameEntity entity : entities) {
+            if (!known.contains(entity.getName())) add.accept(entity);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.watcher.close();
+        } catch (IOException e) {
+            //nothing is being watched any more either way
+        }
+        this.thread.interrupt();
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,54 +1,96 @@
 package edu.uob;
 
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 
+//entities keyed by the symbol id of their name, iteration follows insertion order
 public class EntityList {
-    private final HashSet<GameEntity> entities;
+    private final LinkedHashMap<Integer, GameEntity> entities;
+    private final Vocabulary vocabulary;
+    private final SymbolTable symbols;
+    private String listing;
 
     public EntityList() {
-        this.entities = new HashSet<>();
+        this(null);
     }
 
-    public void add(GameEntity entity) {
-        this.entities.add(entity);
+    public EntityList(Vocabulary vocabulary) {
+        this.entities = new LinkedHashMap<>();
+        this.vocabulary = vocabulary;
+        this.symbols = vocabulary == null ? new SymbolTable() : vocabulary.getSymbols();
     }
 
-    public void remove(String name) {
-        GameEntity toRemove = null;
-        for (GameEntity entity : this.entities) {
-            if (entity.getName().equals(name)) {
-                toRemove = entity;
-                break;
-            }
+    //returns false when the entity replaced one of the same name
+    public boolean add(GameEntity entity) {
+        GameEntity replaced = this.entities.put(this.symbols.intern(entity.getName()), entity);
+        this.listing = null;
+        if (replaced == null && this.vocabulary != null) {
+            this.vocabulary.addEntityName(entity.getName());
         }
-        if (toRemove != null) {
-            this.entities.remove(toRemove);
+        return replaced == null;
+    }
+
+    public boolean remove(String name) {
+        return this.remove(this.symbols.id(name));
+    }
+
+    public boolean remove(int id) {
+        GameEntity removed = this.entities.remove(id);
+        if (removed != null) this.listing = null;
+        if (removed != null && this.vocabulary != null) {
+            this.vocabulary.removeEntityName(removed.getName());
         }
+        return removed != null;
     }
 
-    public boolean contains(String name) {
-        for (GameEntity entity : this.entities) {
-            if (entity.getName().equalsIgnoreCase(name)) {
-                return true;
+    public void clear() {
+        if (this.vocabulary != null) {
+            for (GameEntity entity : this.entities.values()) {
+                this.vocabulary.removeEntityName(entity.getName());
             }
         }
-        return false;
+        this.entities.clear();
+        this.listing = null;
+    }
+
+    public boolean contains(String name) {
+        return this.contains(this.symbols.id(name));
+    }
+
+    public boolean contains(int id) {
+        return this.entities.containsKey(id);
     }
 
     public GameEntity getEntity(String name) {
-        for (GameEntity entity : this.entities) {
-            if (entity.getName().equals(name)) {
-                return entity;
-            }
-        }
-        return null;
+        return this.getEntity(this.symbols.id(name));
+    }
+
+    public GameEntity getEntity(int id) {
+        return this.entities.get(id);
     }
 
-    public HashSet<GameEntity> getEntities() {
-        return this.entities;
+    public Collection<GameEntity> getEntities() {
+        return this.entities.values();
     }
 
     public boolean hasEntities() {
         return !this.entities.isEmpty();
     }
-}
\ No newline at end of file
+
+    //comma separated entity descriptions, rendered again only after the list changes
+    public String describe() {
+        if (this.listing == null) {
+            StringBuilder sb = new StringBuilder();
+            Iterator<GameEntity> iterator = this.entities.values().iterator();
+            while (iterator.hasNext()) {
+                sb.append(iterator.next().getDescription());
+                if (iterator.hasNext()) {
+                    sb.append(", ");
+                }
+            }
+            this.listing = sb.toString();
+        }
+        return this.listing;
+    }
+}
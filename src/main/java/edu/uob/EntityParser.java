@@ -13,17 +13,15 @@ import java.util.LinkedList;
 public class EntityParser {
     private GameState gameState;
 
-    public EntityParser(GameState gameState) {
-        this.gameState = gameState;
-    }
-
-    public void parseEntities(File entitiesFile) {
+    //parses the file once, the first location becomes the start location of the new game state
+    public GameState parseWorld(File entitiesFile) {
         try {
             LinkedList<Graph> graphs = this.parseDocument(entitiesFile);
             if (graphs == null || graphs.isEmpty()) {
                 throw new IllegalStateException("No graphs found in the file or parsing failed.");
             }
             this.parseSections(graphs.get(0));
+            return this.gameState;
         } catch (Exception e) {
             throw new IllegalStateException(String.format("Error parsing entities file: %s", e.getMessage()), e);
         }
@@ -31,57 +29,40 @@ public class EntityParser {
 
     private LinkedList<Graph> parseDocument(File entitiesFile) throws Exception {
         Parser parser = new Parser();
-        FileReader reader = new FileReader(entitiesFile);
-        parser.parse(reader);
+        try (FileReader reader = new FileReader(entitiesFile)) {
+            parser.parse(reader);
+        }
         return new LinkedList<>(parser.getGraphs());
     }
 
     private void parseSections(Graph wholeDocument) {
         LinkedList<Graph> sections = new LinkedList<>(wholeDocument.getSubgraphs());
-        if (sections.size() > 1) {
-            LinkedList<Graph> locationSection = new LinkedList<>(sections.get(0).getSubgraphs());
-            this.parseLocations(locationSection);
-            this.parseEntities(locationSection);
-            this.parsePaths(new LinkedList<>(sections.get(1).getEdges()));
-
-            this.parseLocations(locationSection);
-            this.parseEntities(locationSection);
-            this.parsePaths(new LinkedList<>(sections.get(1).getEdges()));
+        if (sections.size() <= 1) {
+            throw new IllegalStateException("Entities file needs a locations and a paths section");
+        }
+        LinkedList<Graph> locationSection = new LinkedList<>(sections.get(0).getSubgraphs());
+        if (locationSection.isEmpty()) {
+            throw new IllegalStateException("Failed to parse start location from entities file");
         }
+        this.gameState = new GameState(this.locationName(locationSection.getFirst()));
+        this.parseLocations(locationSection);
+        this.parsePaths(new LinkedList<>(sections.get(1).getEdges()));
     }
 
+    private String locationName(Graph locationGraph) {
+        return locationGraph.getNodes(false).get(0).getId().getId();
+    }
+
+    //each location is added together with its entities in the same traversal
     private void parseLocations(LinkedList<Graph> locations) {
         Iterator<Graph> iterator = locations.iterator();
+        LinkedList<String> reservedWords = this.getReservedWords();
         while (iterator.hasNext()) {
             Graph locationGraph = iterator.next();
-            String name = locationGraph.getNodes(false).get(0).getId().getId();
+            String name = this.locationName(locationGraph);
             String description = locationGraph.getNodes(false).get(0).getAttribute("description");
             this.gameState.addLocation(name, description);
-        }
-    }
-
-    public GameState parseStartLocation(File entitiesFile) {
-        try {
-            LinkedList<Graph> graphs = this.parseDocument(entitiesFile);
-            if (!graphs.isEmpty()) {
-                Graph wholeDocument = graphs.get(0);
-                LinkedList<Graph> sections = new LinkedList<>(wholeDocument.getSubgraphs());
-                if (sections.size() > 1) {
-                    LinkedList<Graph> locationSection = new LinkedList<>(sections.get(0).getSubgraphs());
-                    if (!locationSection.isEmpty()) {
-                        Graph firstLocationGraph = locationSection.getFirst();
-                        String name = firstLocationGraph.getNodes(false).get(0).getId().getId();
-                        String description = firstLocationGraph.getNodes(false).get(0).getAttribute("description");
-                        GameState tempState = new GameState(name);
-                        tempState.addLocation(name, description);
-                        this.gameState = tempState;
-                        return tempState;
-                    }
-                }
-            }
-            throw new IllegalStateException("Failed to parse start location from entities file");
-        } catch (Exception e) {
-            throw new IllegalStateException(String.format("Error parsing start location: %s", e.getMessage()));
+            this.parseEntitySubgraphs(locationGraph, this.gameState.getLocation(name), reservedWords);
         }
     }
 
@@ -97,19 +78,6 @@ public class EntityParser {
         return reservedWords;
     }
 
-    private void parseEntities(LinkedList<Graph> locations) {
-        Iterator<Graph> locationIterator = locations.iterator();
-        LinkedList<String> reservedWords = this.getReservedWords();
-        while (locationIterator.hasNext()) {
-            Graph locationGraph = locationIterator.next();
-            String locationName = locationGraph.getNodes(false).get(0).getId().getId();
-            Location loc = this.gameState.getLocation(locationName);
-            if (loc != null) {
-                this.parseEntitySubgraphs(locationGraph, loc, reservedWords);
-            }
-        }
-    }
-
     private void parseEntitySubgraphs(Graph locationGraph, Location loc, LinkedList<String> reservedWords){
         LinkedList<Graph> entitySubgraphs = new LinkedList<>(locationGraph.getSubgraphs());
         Iterator<Graph> entityIterator = entitySubgraphs.iterator();
@@ -18,9 +18,37 @@ public final class GameClient {
 
     public static void main(String[] args) throws IOException {
         String username = args[0];
+        if (args.length > 1 && args[1].equals("--persistent")) {
+            runSession(username);
+            return;
+        }
         while (!Thread.interrupted()) handleNextCommand(username);
     }
 
+    // Keeps one connection open; lines already waiting on stdin are pipelined before reading replies
+    private static void runSession(String username) throws IOException {
+        BufferedReader commandLine = new BufferedReader(new InputStreamReader(System.in));
+        try (GameSession session = new GameSession(username, "localhost", 8888)) {
+            while (!Thread.interrupted()) {
+                System.out.print(username + ":> ");
+                String command = commandLine.readLine();
+                if (command == null) return;
+                session.send(command);
+                int pending = 1;
+                while (commandLine.ready()) {
+                    command = commandLine.readLine();
+                    if (command == null) break;
+                    session.send(command);
+                    pending++;
+                }
+                while (pending > 0) {
+                    System.out.println(session.receive());
+                    pending--;
+                }
+            }
+        }
+    }
+
     private static void handleNextCommand(String username) throws IOException {
         System.out.print(username + ":> ");
         BufferedReader commandLine = new BufferedReader(new InputStreamReader(System.in));
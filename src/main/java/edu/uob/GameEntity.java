@@ -1,6 +1,7 @@
 package edu.uob;
 
 import java.util.HashMap;
+import java.util.Map;
 
 public abstract class GameEntity
 {
@@ -28,4 +29,9 @@ public abstract class GameEntity
         return this.description;
     }
 
+    public Map<String, String> getAttributes()
+    {
+        return this.attributes;
+    }
+
 }
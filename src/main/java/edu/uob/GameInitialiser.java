@@ -1,30 +1,20 @@
 package edu.uob;
 
 import java.io.File;
-import java.util.Iterator;
-import java.util.LinkedList;
 
 public class GameInitialiser {
-    private final GameState gameState;
 
-    public GameInitialiser(GameState gameState) {
-        this.gameState = gameState;
+    public GameState initialise(File entitiesFile, File actionsFile) {
+        EntityParser entityParser = new EntityParser();
+        GameState gameState = entityParser.parseWorld(entitiesFile);
+        gameState.getPaths().compact();
+        ActionParser actionParser = new ActionParser(gameState::addAction);
+        actionParser.parseAction(actionsFile);
+        return gameState;
     }
 
-    public void initialise(File entitiesFile, File actionsFile) {
-        EntityParser entityParser = new EntityParser(this.gameState);
-        entityParser.parseEntities(entitiesFile);
-        Location storeroom = this.gameState.getStoreroom();
-        if (!this.gameState.getLocations().containsKey("storeroom")) {
-            this.gameState.addLocation("storeroom", "");
-        }
-        LinkedList<GameAction> actions = new LinkedList<>();
-        ActionParser actionParser = new ActionParser(actions);
-        actionParser.parseAction(actionsFile);
-        Iterator<GameAction> actionIterator = actions.iterator();
-        while (actionIterator.hasNext()) {
-            GameAction action = actionIterator.next();
-            this.gameState.addAction(action);
-        }
+    //same world, but read from a precompiled image that is rebuilt whenever the sources change
+    public GameState initialise(File entitiesFile, File actionsFile, File worldImage) {
+        return WorldImage.loadOrCompile(entitiesFile, actionsFile, worldImage);
     }
-}
\ No newline at end of file
+}
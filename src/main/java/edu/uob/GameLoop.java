@@ -0,0 +1,166 @@
+package edu.uob;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+//the only thread that touches the world in single-writer mode: connection threads queue their commands,
+//this thread takes whatever has arrived as one batch, applies it in order, then completes the replies
+//a full queue slows blocking connection threads down in submit, selector threads must never block, so
+//they offer instead and stop reading from the connection until whenRoom calls them back
+public class GameLoop implements Closeable {
+    private static final int MAX_BATCH = 256;
+
+    private final CommandProcessor processor;
+    private final BlockingQueue<QueuedCommand> queue;
+    private final Thread thread;
+    //callers whose offer found the queue full, told once a batch has been taken off it
+    private final ConcurrentLinkedQueue<Runnable> waitingForRoom;
+    private volatile boolean running;
+    private long batches;
+    private long commands;
+
+    public GameLoop(CommandProcessor processor, int capacity) {
+        this.processor = processor;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.waitingForRoom = new ConcurrentLinkedQueue<>();
+        this.thread = new Thread(this::run, "stag-game-loop");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        this.running = true;
+        this.thread.start();
+    }
+
+    //blocks the caller while the queue is full, so a flood of commands slows its senders down
+    public CompletableFuture<String> submit(String command) {
+        return this.enqueue(new QueuedCommand(command, null), true);
+    }
+
+    //never blocks: null while the queue is full, whenRoom says when to offer the command again
+    public CompletableFuture<String> offer(String command) {
+        return this.enqueue(new QueuedCommand(command, null), false);
+    }
+
+    //runs the callback once the loop has taken commands off the queue, or straight away if it already has
+    public void whenRoom(Runnable callback) {
+        this.waitingForRoom.add(callback);
+        //the loop may have made room, or stopped, between the failed offer and now
+        if (this.queue.remainingCapacity() > 0 || !this.running) this.signalRoom();
+    }
+
+    //runs the task on the loop thread between two commands, while nothing else changes the world
+    public CompletableFuture<String> runPaused(Runnable task) {
+        return this.enqueue(new QueuedCommand(null, task), true);
+    }
+
+    private CompletableFuture<String> enqueue(QueuedCommand queued, boolean wait) {
+        if (!this.running) {
+            queued.reply.completeExceptionally(new RejectedExecutionException("Game loop is not running"));
+            return queued.reply;
+        }
+        if (!wait) {
+            if (!this.queue.offer(queued)) return null;
+        } else {
+            try {
+                this.queue.put(queued);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued.reply.completeExceptionally(e);
+            }
+        }
+        //the loop may have stopped while this command was being queued
+        if (!this.running && this.queue.remove(queued)) {
+            queued.reply.completeExceptionally(new RejectedExecutionException("Game loop stopped"));
+        }
+        return queued.reply;
+    }
+
+    private void run() {
+        ArrayList<QueuedCommand> batch = new ArrayList<>(MAX_BATCH);
+        String[] results = new String[MAX_BATCH];
+        RuntimeException[] failures = new RuntimeException[MAX_BATCH];
+        while (this.running) {
+            try {
+                batch.add(this.queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            this.queue.drainTo(batch, MAX_BATCH - 1);
+            this.signalRoom();
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    QueuedCommand queued = batch.get(i);
+                    if (queued.task != null) {
+                        queued.task.run();
+                    } else {
+                        results[i] = this.processor.processCommand(queued.command);
+                    }
+                } catch (RuntimeException e) {
+                    failures[i] = e;
+                }
+            }
+            //replies go out once the whole batch is applied, waking the waiting threads together
+            for (int i = 0; i < batch.size(); i++) {
+                QueuedCommand queued = batch.get(i);
+                if (failures[i] != null) {
+                    queued.reply.completeExceptionally(failures[i]);
+                } else {
+                    queued.reply.complete(results[i]);
+                }
+                results[i] = null;
+                failures[i] = null;
+            }
+            this.batches++;
+            this.commands += batch.size();
+            batch.clear();
+        }
+        QueuedCommand left = this.queue.poll();
+        while (left != null) {
+            left.reply.completeExceptionally(new RejectedExecutionException("Game loop stopped"));
+            left = this.queue.poll();
+        }
+        this.signalRoom();
+    }
+
+    private void signalRoom() {
+        Runnable waiting = this.waitingForRoom.poll();
+        while (waiting != null) {
+            waiting.run();
+            waiting = this.waitingForRoom.poll();
+        }
+    }
+
+    //average number of commands applied per wake-up of the loop, only meaningful once it has stopped
+    public double getAverageBatchSize() {
+        return this.batches == 0 ? 0 : (double) this.commands / this.batches;
+    }
+
+    @Override
+    public void close() {
+        this.running = false;
+        this.thread.interrupt();
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class QueuedCommand {
+        private final String command;
+        private final Runnable task;
+        private final CompletableFuture<String> reply;
+
+        QueuedCommand(String command, Runnable task) {
+            this.command = command;
+            this.task = task;
+            this.reply = new CompletableFuture<>();
+        }
+    }
+}
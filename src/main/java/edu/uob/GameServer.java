@@ -9,18 +9,78 @@ import java.io.OutputStreamWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 public final class GameServer {
 
     private static final char END_OF_TRANSMISSION = 4;
     private final GameState gameState;
     private  CommandProcessor commandProcessor;
+    //every command runs under this lock, so concurrent connections see commands applied one at a time
+    private final ReentrantLock worldLock = new ReentrantLock();
+    private boolean persistentSessions;
+    private volatile GameLoop gameLoop;
+    private volatile WorldShards shards;
+    private volatile CommandJournal journal;
+    //journal sequence the restored checkpoint is current to, replay starts after it
+    private long checkpointSequence;
+    private final Object checkpointing = new Object();
+    private ScheduledExecutorService checkpoints;
+    private volatile File checkpointFile;
+    //applies the commands the non-blocking server submits in world-lock mode, so a selector thread never
+    //waits on the lock or the journal, one thread keeps every connection's commands in the order sent
+    private final ExecutorService lockedWriter = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "stag-locked-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ContentReloader reloader;
+    private MetricsEndpoint metricsEndpoint;
 
     public static void main(String[] args) throws IOException {
+        ServerOptions options = ServerOptions.parse(args);
+        ServerLog.configure(options.getLogLevel(), options.getLogSample());
         File entitiesFile = Paths.get("config","extended-entities.dot").toAbsolutePath().toFile();
         File actionsFile = Paths.get("config","extended-actions.xml").toAbsolutePath().toFile();
-        GameServer server = new GameServer(entitiesFile, actionsFile);
-        server.blockingListenOn(8888);
+        GameServer server = options.getWorldImage() == null
+                ? new GameServer(entitiesFile, actionsFile)
+                : new GameServer(entitiesFile, actionsFile, new File(options.getWorldImage()));
+        server.setPersistentSessions(options.isPersistent());
+        if (options.isReload()) server.watchContent(entitiesFile, actionsFile);
+        if (options.getCheckpoint() != null) server.restoreCheckpoint(new File(options.getCheckpoint()));
+        if (options.getJournal() != null) server.openJournal(new File(options.getJournal()));
+        if (options.getShards() > 0) {
+            server.startShards(options.getShards());
+        } else if (options.isSingleWriter()) {
+            server.startGameLoop(options.getQueueCapacity());
+        }
+        if (options.getMetricsPort() >= 0) server.startMetrics(options.getMetricsPort());
+        if (options.getCheckpoint() != null) {
+            server.startCheckpoints(new File(options.getCheckpoint()), options.getCheckpointInterval() * 1000L);
+        }
+        if (options.isReload()) server.startReloading();
+        if (options.isNonBlocking()) {
+            server.nonBlockingListenOn(options.getPort(), options.getSelectorThreads());
+        } else if (options.isConcurrent()) {
+            server.concurrentListenOn(options.getPort(), options.getPoolSize());
+        } else {
+            server.blockingListenOn(options.getPort());
+        }
+    }
+
+    //runs the callback once a command refused by submitCommand without waiting can be submitted again
+    void whenRoom(Runnable callback) {
+        GameLoop loop = this.gameLoop;
+        if (loop == null) {
+            callback.run();
+        } else {
+            loop.whenRoom(callback);
+        }
     }
 
     /**
@@ -32,11 +92,352 @@ public final class GameServer {
     */
     public GameServer(File entitiesFile, File actionsFile) {
         // TODO implement your server logic here
-        EntityParser entityParser = new EntityParser(null);
-        this.gameState = entityParser.parseStartLocation(entitiesFile);
-        GameInitialiser initialiser = new GameInitialiser(this.gameState);
-        initialiser.initialise(entitiesFile, actionsFile);
+        GameInitialiser initialiser = new GameInitialiser();
+        this.gameState = initialiser.initialise(entitiesFile, actionsFile);
         this.commandProcessor = new CommandProcessor(this.gameState);
+        this.addGauges();
+    }
+
+    /**
+    * Instanciates a new server instance from a precompiled world image, compiling it first when it
+    * is missing or does not match the configuration files
+    *
+    * @param entitiesFile The game configuration file containing all game entities to use in your game
+    * @param actionsFile The game configuration file containing all game actions to use in your game
+    * @param worldImage The binary world image compiled from the two configuration files
+    */
+    public GameServer(File entitiesFile, File actionsFile, File worldImage) {
+        GameInitialiser initialiser = new GameInitialiser();
+        this.gameState = initialiser.initialise(entitiesFile, actionsFile, worldImage);
+        this.commandProcessor = new CommandProcessor(this.gameState);
+        this.addGauges();
+    }
+
+    //gauges are only read when the metrics are rendered, none of them stops a writer
+    private void addGauges() {
+        ServerMetrics metrics = this.getMetrics();
+        metrics.addGauge("stag_players", () -> this.gameState.getPlayers().size());
+        metrics.addGauge("stag_locations", () -> this.gameState.getLocations().size());
+        metrics.addGauge("stag_entities", () -> this.gameState.getVocabulary().getEntityCount());
+        metrics.addGauge("stag_journal_lag", () -> {
+            CommandJournal log = this.journal;
+            return log == null ? 0 : log.getLastSequence() - log.getDurableSequence();
+        });
+    }
+
+    ServerMetrics getMetrics() {
+        return this.commandProcessor.getMetrics();
+    }
+
+    GameState getGameState() {
+        return this.gameState;
+    }
+
+    CommandProcessor getCommandProcessor() {
+        return this.commandProcessor;
+    }
+
+    /**
+    * Keeps connections open after the first reply so a client can send many commands over one socket.
+    * Every reply is still terminated by END_OF_TRANSMISSION. Connections are one-shot by default.
+    *
+    * @param persistentSessions Whether connections carry more than one command.
+    */
+    public void setPersistentSessions(boolean persistentSessions) {
+        this.persistentSessions = persistentSessions;
+    }
+
+    /**
+    * Switches to single-writer execution: from now on every command is queued to one game loop thread,
+    * which is the only thread that reads or changes the world, instead of taking the world lock.
+    *
+    * @param queueCapacity How many commands may wait before submitting threads are made to wait, or, for
+    *                      selector threads, before their connection stops being read.
+    */
+    public void startGameLoop(int queueCapacity) {
+        GameLoop loop = new GameLoop(this.commandProcessor, queueCapacity);
+        loop.start();
+        this.gameLoop = loop;
+    }
+
+    GameLoop getGameLoop() {
+        return this.gameLoop;
+    }
+
+    public void stopGameLoop() {
+        if (this.gameLoop != null) {
+            this.gameLoop.close();
+            this.gameLoop = null;
+        }
+    }
+
+    /**
+    * Switches to sharded execution: the map is split into regions, each owned by one thread, and every
+    * command is queued to the region holding its player's current location.
+    *
+    * @param regionCount How many regions, and so threads, the world is split into.
+    */
+    public void startShards(int regionCount) {
+        if (this.journal != null) throw new IllegalStateException("Sharded execution cannot be journaled");
+        WorldShards regions = new WorldShards(this.gameState, this.commandProcessor, regionCount);
+        regions.start();
+        this.shards = regions;
+    }
+
+    public void stopShards() {
+        if (this.shards != null) {
+            this.shards.close();
+            this.shards = null;
+        }
+    }
+
+    /**
+    * Replays the journal over the world as loaded, then appends every command applied from now on that
+    * can change the world to it. Replies to commands are only released once every record they could
+    * have seen has been forced to disk. Regions apply commands in an order no single journal records,
+    * so a journal cannot be opened together with the shards.
+    *
+    * @param journalFile The journal, created when it does not exist yet.
+    * @throws IOException If the journal cannot be read or opened for appending.
+    */
+    public void openJournal(File journalFile) throws IOException {
+        if (this.shards != null) throw new IllegalStateException("Sharded execution cannot be journaled");
+        //a checkpoint that failed to write leaves the records it would have covered in the previous segment
+        File previous = CommandJournal.previousSegment(journalFile);
+        long lastSequence = CommandJournal.replay(previous, this.checkpointSequence, this.commandProcessor::processCommand);
+        lastSequence = CommandJournal.replay(journalFile, lastSequence, this.commandProcessor::processCommand);
+        CommandJournal opened = CommandJournal.open(journalFile, lastSequence);
+        this.commandProcessor.setJournal(opened);
+        this.journal = opened;
+    }
+
+    public void closeJournal() throws IOException {
+        CommandJournal opened = this.journal;
+        if (opened != null) {
+            this.commandProcessor.setJournal(null);
+            this.journal = null;
+            opened.close();
+        }
+    }
+
+    /**
+    * Puts the world back the way the checkpoint recorded it. Call before openJournal, which then only
+    * replays the commands applied after the checkpoint was taken.
+    *
+    * @param checkpointFile The checkpoint, ignored when it does not exist or fails its checksum.
+    * @throws IOException If the checkpoint cannot be read.
+    */
+    public void restoreCheckpoint(File checkpointFile) throws IOException {
+        this.checkpointSequence = WorldCheckpoint.restore(checkpointFile, this.gameState);
+    }
+
+    /**
+    * Writes a checkpoint of the world. Writers are paused only while it is captured, which copies
+    * references rather than encoding anything, and the journal is rotated at the same moment so its
+    * covered records can be dropped once the checkpoint is on disk.
+    *
+    * @param checkpointFile The checkpoint, replaced atomically.
+    * @throws IOException If the checkpoint or the journal rotation cannot be written.
+    */
+    public void checkpoint(File checkpointFile) throws IOException {
+        this.checkpoint(checkpointFile, () -> { });
+    }
+
+    //applies the change in the same pause the checkpoint is captured in, so the checkpoint includes it
+    private void checkpoint(File checkpointFile, Runnable change) throws IOException {
+        synchronized (this.checkpointing) {
+            CommandJournal log = this.journal;
+            WorldCheckpoint[] captured = new WorldCheckpoint[1];
+            this.pauseWriters(() -> {
+                change.run();
+                captured[0] = WorldCheckpoint.capture(this.gameState, log == null ? 0 : log.getLastSequence());
+                if (log == null) return;
+                try {
+                    log.rotate();
+                } catch (IOException e) {
+                    throw new IllegalStateException("Journal rotation failed", e);
+                }
+            });
+            captured[0].write(checkpointFile);
+            if (log != null) log.deletePrevious();
+        }
+    }
+
+    /**
+    * Writes a checkpoint in the background every interval, the first one an interval from now.
+    *
+    * @param checkpointFile The checkpoint, replaced atomically each time.
+    * @param intervalMillis Time between the end of one checkpoint and the start of the next.
+    */
+    public void startCheckpoints(File checkpointFile, long intervalMillis) {
+        this.checkpointFile = checkpointFile;
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "stag-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                this.checkpoint(checkpointFile);
+            } catch (IOException | RuntimeException e) {
+                //the journal still holds everything, the next checkpoint tries again
+                ServerLog.get().warn("Checkpoint failed", e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        this.checkpoints = scheduler;
+    }
+
+    public void stopCheckpoints() {
+        if (this.checkpoints != null) {
+            this.checkpoints.shutdownNow();
+            this.checkpoints = null;
+            this.checkpointFile = null;
+        }
+    }
+
+    /**
+    * Watches the configuration files and applies their changes without a restart. A changed actions
+    * file replaces every action at once, a changed entities file adds its new locations, entities and
+    * paths, and live player state is left as it is.
+    *
+    * @param entitiesFile The game configuration file containing all game entities to use in your game
+    * @param actionsFile The game configuration file containing all game actions to use in your game
+    * @throws IOException If the files' directories cannot be watched.
+    */
+    public void startReloading(File entitiesFile, File actionsFile) throws IOException {
+        this.watchContent(entitiesFile, actionsFile);
+        this.startReloading();
+    }
+
+    /**
+    * Starts watching the configuration files, taking what they held from the world as loaded. Call it
+    * before restoreCheckpoint and openJournal change the world, then startReloading once they are done.
+    *
+    * @param entitiesFile The game configuration file containing all game entities to use in your game
+    * @param actionsFile The game configuration file containing all game actions to use in your game
+    * @throws IOException If the files' directories cannot be watched.
+    */
+    public void watchContent(File entitiesFile, File actionsFile) throws IOException {
+        this.reloader = new ContentReloader(this.gameState, this.commandProcessor, entitiesFile, actionsFile,
+                this::applyReload);
+    }
+
+    /**
+    * Applies the changes watchContent sees from now on. With a journal open every reload is
+    * checkpointed while writers are still paused for it, so the commands journaled before it are never
+    * replayed against the reloaded files; reloading with a journal therefore needs startCheckpoints.
+    */
+    public void startReloading() {
+        if (this.journal != null && this.checkpointFile == null) {
+            throw new IllegalStateException("Reloading with a journal open needs checkpoints");
+        }
+        this.reloader.start();
+    }
+
+    private void applyReload(Runnable change) {
+        File file = this.checkpointFile;
+        if (this.journal == null || file == null) {
+            this.pauseWriters(change);
+            return;
+        }
+        try {
+            this.checkpoint(file, change);
+        } catch (IOException e) {
+            throw new IllegalStateException("Checkpoint after reload failed", e);
+        }
+    }
+
+    public void stopReloading() {
+        if (this.reloader != null) {
+            this.reloader.close();
+            this.reloader = null;
+        }
+    }
+
+    /**
+    * Serves the metrics as text at http://localhost:port/metrics: command counts, latency percentiles
+    * for each stage of a command, and gauges for players, locations, entities and journal lag.
+    *
+    * @param port The loopback port to listen on, 0 picks a free one.
+    * @return The port the endpoint listens on.
+    * @throws IOException If the port cannot be bound.
+    */
+    public int startMetrics(int port) throws IOException {
+        MetricsEndpoint endpoint = new MetricsEndpoint(this.getMetrics(), port);
+        endpoint.start();
+        this.metricsEndpoint = endpoint;
+        return endpoint.getPort();
+    }
+
+    public void stopMetrics() {
+        if (this.metricsEndpoint != null) {
+            this.metricsEndpoint.close();
+            this.metricsEndpoint = null;
+        }
+    }
+
+    //runs the task while no command is being applied, on whichever thread the current mode applies them
+    private void pauseWriters(Runnable task) {
+        GameLoop loop = this.gameLoop;
+        WorldShards regions = this.shards;
+        if (regions != null) {
+            regions.runPaused(task);
+        } else if (loop != null) {
+            loop.runPaused(task).join();
+        } else {
+            this.worldLock.lock();
+            try {
+                task.run();
+            } finally {
+                this.worldLock.unlock();
+            }
+        }
+    }
+
+    /**
+    * Hands a command over for processing without waiting for it. Look, inv and health are answered
+    * straight away from the published snapshots, unless the journal has records that are not durable
+    * yet. With the game loop or the shards running, malformed commands are answered straight away too
+    * and the rest are queued; otherwise the command is handed to a writer thread that processes it
+    * under the world lock. The reply completes once its journal record is durable.
+    *
+    * @param command The incoming command to be processed
+    * @return The reply, completed once the command has been applied
+    */
+    public CompletableFuture<String> submitCommand(String command) {
+        return this.submitCommand(command, true);
+    }
+
+    //a connection with earlier commands still queued passes false, so a read cannot overtake them
+    CompletableFuture<String> submitCommand(String command, boolean readFromSnapshot) {
+        return this.submitCommand(command, readFromSnapshot, true);
+    }
+
+    //selector threads pass false for wait: they must never block, so they get null back while the game
+    //loop's queue is full, and whenRoom tells them when to submit the command again
+    CompletableFuture<String> submitCommand(String command, boolean readFromSnapshot, boolean wait) {
+        if (readFromSnapshot) {
+            String snapshotReply = this.commandProcessor.processRead(command);
+            if (snapshotReply != null) return CompletableFuture.completedFuture(snapshotReply);
+        }
+        GameLoop loop = this.gameLoop;
+        WorldShards regions = this.shards;
+        CompletableFuture<String> reply;
+        if (loop == null && regions == null) {
+            reply = CompletableFuture.supplyAsync(() -> this.processUnderLock(command), this.lockedWriter);
+        } else {
+            if (!CommandProcessor.isWellFormed(command)) return CompletableFuture.completedFuture("Missing valid trigger");
+            if (regions != null) {
+                reply = regions.submit(command);
+            } else {
+                reply = wait ? loop.submit(command) : loop.offer(command);
+                if (reply == null) return null;
+            }
+        }
+        CommandJournal log = this.journal;
+        if (log == null) return reply;
+        //by the time the reply completes its record is appended, so the last sequence covers it
+        return reply.thenCompose(result -> log.whenDurable(log.getLastSequence()).thenApply(done -> result));
     }
 
     /**
@@ -47,7 +448,36 @@ public final class GameServer {
     */
 
     public String handleCommand(String command) {
-        return this.commandProcessor.processCommand(command);
+        String snapshotReply = this.commandProcessor.processRead(command);
+        if (snapshotReply != null) return snapshotReply;
+        if (this.gameLoop != null || this.shards != null) return this.submitCommand(command, false).join();
+        return this.applyUnderLock(command);
+    }
+
+    private String processUnderLock(String command) {
+        this.worldLock.lock();
+        try {
+            return this.commandProcessor.processCommand(command);
+        } finally {
+            this.worldLock.unlock();
+        }
+    }
+
+    //waits for the journal outside the lock, so the next writer can apply while this one's fsync runs
+    private String applyUnderLock(String command) {
+        String reply;
+        long sequence;
+        this.worldLock.lock();
+        try {
+            reply = this.commandProcessor.processCommand(command);
+            CommandJournal log = this.journal;
+            sequence = log == null ? 0 : log.getLastSequence();
+        } finally {
+            this.worldLock.unlock();
+        }
+        CommandJournal log = this.journal;
+        if (log != null) log.awaitDurable(sequence);
+        return reply;
     }
 
 
@@ -60,17 +490,56 @@ public final class GameServer {
     */
     public void blockingListenOn(int portNumber) throws IOException {
         try (ServerSocket s = new ServerSocket(portNumber)) {
-            System.out.printf("Server listening on port %d", portNumber);
+            ServerLog.get().start();
+            ServerLog.get().info("Server listening on port " + portNumber);
             while (!Thread.interrupted()) {
                 try {
                     this.blockingHandleConnection(s);
                 } catch (IOException e) {
-                    System.out.println("Connection closed");
+                    ServerLog.get().debug("Connection closed");
                 }
             }
         }
     }
 
+    /**
+    * Starts a server that accepts connections on a dedicated thread and serves each of them on a
+    * worker pool, so a slow client only ever holds up its own connection.
+    *
+    * @param portNumber The port to listen on.
+    * @param poolSize The number of worker threads when virtual threads are not available.
+    * @throws IOException If the server socket cannot be opened.
+    */
+    public void concurrentListenOn(int portNumber, int poolSize) throws IOException {
+        try (ConnectionAcceptor acceptor = new ConnectionAcceptor(this, portNumber, ConnectionAcceptor.newWorkerPool(poolSize))) {
+            ServerLog.get().start();
+            ServerLog.get().info("Server listening on port " + acceptor.getPort());
+            acceptor.start();
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+    * Starts a non-blocking server that multiplexes every open session over a few selector threads.
+    * Connections are always persistent in this mode, and every reply ends with END_OF_TRANSMISSION.
+    *
+    * @param portNumber The port to listen on.
+    * @param selectorThreads The number of event loop threads serving connections.
+    * @throws IOException If the server channel cannot be opened.
+    */
+    public void nonBlockingListenOn(int portNumber, int selectorThreads) throws IOException {
+        try (NioGameServer nioServer = new NioGameServer(this, portNumber, selectorThreads)) {
+            ServerLog.get().start();
+            ServerLog.get().info("Server listening on port " + nioServer.getPort());
+            nioServer.start();
+            nioServer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
     * Do not change the following method signature or we won't be able to mark your submission
     * Handles an incoming connection from the socket server.
@@ -80,24 +549,32 @@ public final class GameServer {
     */
 
     private void blockingHandleConnection(ServerSocket serverSocket) throws IOException {
-        try (Socket s = serverSocket.accept();
+        this.serveConnection(serverSocket.accept());
+    }
+
+    void serveConnection(Socket socket) throws IOException {
+        try (Socket s = socket;
              BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream()));
              BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(s.getOutputStream()))) {
-            System.out.println("Connection established");
+            ServerLog log = ServerLog.get();
+            log.debug("Connection established");
             String incomingCommand = reader.readLine();
-            if(incomingCommand != null) {
-                StringBuilder receivedMsg = new StringBuilder();
-                receivedMsg.append("Received message from ");
-                receivedMsg.append(incomingCommand);
-                System.out.println(receivedMsg.toString());
+            while (incomingCommand != null) {
+                long started = System.nanoTime();
                 String result = this.handleCommand(incomingCommand);
+                log.command(incomingCommand, result, System.nanoTime() - started);
                 StringBuilder output = new StringBuilder();
                 output.append(result);
                 output.append("\n");
                 output.append(END_OF_TRANSMISSION);
                 output.append("\n");
+                long writing = System.nanoTime();
                 writer.write(output.toString());
-                writer.flush();
+                //pipelined commands already waiting are answered before the replies are flushed together
+                if (!this.persistentSessions || !reader.ready()) writer.flush();
+                this.getMetrics().record(ServerMetrics.Stage.SOCKET_WRITE, System.nanoTime() - writing);
+                if (!this.persistentSessions) break;
+                incomingCommand = reader.readLine();
             }
         }
     }
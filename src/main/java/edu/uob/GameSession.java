@@ -0,0 +1,60 @@
+package edu.uob;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+
+/**
+ * A client connection that carries many commands to a server running with persistent sessions.
+ *
+ * <p>Commands can be pipelined: several calls to {@link #send} may be made before the replies are
+ * collected with {@link #receive}, which returns them in the order the commands were sent.
+ */
+public final class GameSession implements Closeable {
+
+    private static final char END_OF_TRANSMISSION = 4;
+    private final String username;
+    private final Socket socket;
+    private final BufferedReader reader;
+    private final BufferedWriter writer;
+
+    public GameSession(String username, String host, int port) throws IOException {
+        this.username = username;
+        this.socket = new Socket(host, port);
+        this.reader = new BufferedReader(new InputStreamReader(this.socket.getInputStream()));
+        this.writer = new BufferedWriter(new OutputStreamWriter(this.socket.getOutputStream()));
+    }
+
+    public void send(String command) throws IOException {
+        this.writer.write(this.username + ": " + command + "\n");
+        this.writer.flush();
+    }
+
+    public String receive() throws IOException {
+        StringBuilder reply = new StringBuilder();
+        String incomingMessage = this.reader.readLine();
+        if (incomingMessage == null) {
+            throw new IOException("Server disconnected (end-of-stream)");
+        }
+        while (incomingMessage != null && !incomingMessage.contains("" + END_OF_TRANSMISSION + "")) {
+            if (reply.length() > 0) reply.append("\n");
+            reply.append(incomingMessage);
+            incomingMessage = this.reader.readLine();
+        }
+        return reply.toString();
+    }
+
+    public String request(String command) throws IOException {
+        this.send(command);
+        return this.receive();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.socket.close();
+    }
+}
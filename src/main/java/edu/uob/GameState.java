@@ -1,21 +1,68 @@
 package edu.uob;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
 public class GameState {
     private final Map<String, Player> players;
     private final Map<String, Location> locations;
-    private final HashMap<String, LinkedList<GameAction>> actionsByTrigger;
+    //copied on growth so lock-free readers always see a complete array
+    private volatile Location[] locationsById;
+    //swapped whole when the actions file is reloaded
+    private volatile ActionIndex actionIndex;
     private final String startLocation;
     private final Location storeroom;
+    private final Vocabulary vocabulary;
+    private final SymbolTable symbols;
+    private final PathGraph paths;
+    private final HolderIndex holders;
+    //runs a change to the location a player is arriving in, sharded execution hands it to the shard
+    //that owns that location instead of running it on the current thread
+    private volatile BiConsumer<Location, Runnable> arrivals;
+    //the last journal record a writer appended, every snapshot published from now on may show its change
+    private volatile long journalSequence;
 
     public GameState(String initialLocation) {
-        this.players = new HashMap<>();
+        this.players = new ConcurrentHashMap<>();
         this.startLocation = initialLocation;
         this.locations = new HashMap<>();
-        this.actionsByTrigger = new HashMap<>();
-        this.storeroom = new Location("storeroom", "");
+        this.locationsById = new Location[0];
+        this.vocabulary = new Vocabulary();
+        this.symbols = this.vocabulary.getSymbols();
+        this.actionIndex = new ActionIndex(this.symbols);
+        this.paths = new PathGraph(this.symbols);
+        this.holders = new HolderIndex();
+        this.storeroom = new Location("storeroom", "", this.vocabulary, this.paths);
         this.locations.put("storeroom", this.storeroom);
+        this.indexLocation(this.storeroom);
+        this.vocabulary.addLocationName("storeroom");
+        this.arrivals = (location, arrival) -> arrival.run();
+    }
+
+    void setArrivals(BiConsumer<Location, Runnable> arrivals) {
+        this.arrivals = arrivals;
+    }
+
+    //set by the writer after appending a command's record and before applying it
+    void setJournalSequence(long sequence) {
+        this.journalSequence = sequence;
+    }
+
+    long getJournalSequence() {
+        return this.journalSequence;
+    }
+
+    public String getStartLocation() {
+        return this.startLocation;
+    }
+
+    public SymbolTable getSymbols() {
+        return this.symbols;
+    }
+
+    public Vocabulary getVocabulary() {
+        return this.vocabulary;
     }
 
     public Location getStoreroom() {
@@ -23,18 +70,79 @@ public class GameState {
     }
 
     public void addPlayer(String playerName) {
-        Player newPlayer = new Player(playerName, this.startLocation);
+        Player newPlayer = new Player(playerName, this.startLocation, this.vocabulary, this.holders);
+        newPlayer.publish(this.journalSequence);
         this.players.put(playerName, newPlayer);
+        Location start = this.getLocation(newPlayer.getLocationId());
+        if (start != null) {
+            this.arrivals.accept(start, () -> this.arrive(newPlayer, start));
+        }
+        this.vocabulary.addPlayerName(playerName);
+    }
+
+    //puts a player back as a checkpoint recorded them, replacing whatever the player held before
+    void restorePlayer(String playerName, String locationName, int health, LinkedList<GameEntity> inventory) {
+        Player player = this.players.get(playerName);
+        if (player == null) {
+            player = new Player(playerName, locationName, this.vocabulary, this.holders);
+            this.players.put(playerName, player);
+            this.vocabulary.addPlayerName(playerName);
+        } else {
+            Location previous = this.getLocation(player.getLocationId());
+            if (previous != null) {
+                previous.removePlayer(player);
+                previous.publish(this.journalSequence);
+            }
+            for (GameEntity item : player.getInventoryEntities()) {
+                player.removeFromInventory(item.getName());
+            }
+            player.setLocation(locationName);
+        }
+        for (GameEntity item : inventory) {
+            player.addToInventory(item);
+        }
+        player.setHealth(health);
+        player.publish(this.journalSequence);
+        Location location = this.getLocation(player.getLocationId());
+        if (location != null) {
+            location.addPlayer(player);
+            location.publish(this.journalSequence);
+        }
     }
 
     public void addLocation(String name, String description) {
-        this.locations.put(name, new Location(name, description));
+        Location location = new Location(name, description, this.vocabulary, this.paths);
+        Location replaced = this.locations.put(name, location);
+        if (replaced != null) {
+            replaced.clearEntities();
+            this.paths.clearPaths(replaced.getId());
+        }
+        this.indexLocation(location);
+        this.vocabulary.addLocationName(name);
+    }
+
+    private void indexLocation(Location location) {
+        Location[] byId = this.locationsById;
+        if (byId.length <= location.getId()) {
+            byId = Arrays.copyOf(byId, Math.max(location.getId() + 1, byId.length * 2));
+        }
+        byId[location.getId()] = location;
+        this.locationsById = byId;
+    }
+
+    public PathGraph getPaths() {
+        return this.paths;
     }
 
     public Location getLocation(String name) {
         return this.locations.get(name);
     }
 
+    public Location getLocation(int id) {
+        Location[] byId = this.locationsById;
+        return id >= 0 && id < byId.length ? byId[id] : null;
+    }
+
     public Map<String, Location> getLocations() {
         return this.locations;
     }
@@ -51,12 +159,27 @@ public class GameState {
         if (player == null) {
             return this.playerNotFoundMessage(playerName);
         }
-        Location loc = this.locations.get(player.getLocation());
+        Location loc = this.getLocation(player.getLocationId());
+        player.publish(this.journalSequence);
+        return this.describe(loc.publish(this.journalSequence), player);
+    }
+
+    //look served from the last published snapshots, null when either is stale or shows a journal record
+    //after durableSequence, and the look has to go through a writer instead
+    public String lookSnapshot(Player player, long durableSequence) {
+        Player.Snapshot position = player.getSnapshot();
+        if (position == null || position.sequence > durableSequence) return null;
+        Location loc = this.getLocation(position.location);
+        Location.Snapshot scene = loc == null ? null : loc.getSnapshot();
+        if (scene == null || scene.sequence > durableSequence) return null;
+        return this.describe(scene, player);
+    }
+
+    private String describe(Location.Snapshot scene, Player player) {
         StringBuilder desc = new StringBuilder();
-        desc.append("You are in ");
-        desc.append(loc.getDescription());
-        desc.append(".\n");
-        this.appendEntitiesDescription(loc, playerName, desc);
+        desc.append(scene.scene);
+        this.appendOtherPlayers(scene.players, player, desc);
+        this.appendIfNotEmpty(scene.paths, "You can access from here: \n", desc);
         return desc.toString();
     }
 
@@ -66,44 +189,23 @@ public class GameState {
         return playerNotFoundMessage.toString();
     }
 
-    private void appendEntitiesDescription(Location loc, String playerName, StringBuilder desc) {
-        this.appendIfNotEmpty(loc.getArtefacts(), "You can see: \n", desc);
-        if (!loc.getArtefacts().isEmpty()) {
-            desc.append("\n");
+    private void appendOtherPlayers(Player[] others, Player player, StringBuilder desc) {
+        boolean first = true;
+        for (Player p : others) {
+            if (p == player) continue;
+            desc.append(first ? "Other players here: \n" : ", ");
+            desc.append(p.getName());
+            first = false;
         }
-        if (!loc.getFurniture().isEmpty()) {
-            this.appendIfNotEmpty(loc.getFurniture(), "", desc);
+        if (!first) {
             desc.append("\n");
         }
-        if (!loc.getCharacters().isEmpty()) {
-            this.appendIfNotEmpty(loc.getCharacters(), "", desc);
-            desc.append("\n");
-        }
-        this.appendOtherPlayers(loc, playerName, desc);
-        this.appendIfNotEmpty(loc.getPaths(), "You can access from here: \n", desc);
-    }
-
-    private void appendOtherPlayers(Location loc, String playerName, StringBuilder desc) {
-        StringBuilder otherPlayers = new StringBuilder();
-        for (Player p : this.players.values()) {
-            if (!p.getName().equals(playerName) && p.getLocation().equals(loc.getName())) {
-                if (otherPlayers.length() > 0) {
-                    otherPlayers.append(", ");
-                }
-                otherPlayers.append(p.getName());
-            }
-        }
-        if (!otherPlayers.isEmpty()) {
-            this.appendIfNotEmpty(otherPlayers.toString(), "Other players here: \n", desc);
-            desc.append("\n");
-        }
-
     }
 
     public String getItem(String playerName, String item) {
         Player player = this.players.get(playerName);
         if (player == null) return this.playerNotFoundMessage(playerName);
-        Location loc = this.locations.get(player.getLocation());
+        Location loc = this.getLocation(player.getLocationId());
         if (loc.hasArtefact(item)) {
             GameEntity artefact = loc.getArtefactEntity(item);
             if (!(artefact instanceof Artefact)) {
@@ -114,6 +216,8 @@ public class GameState {
             }
             player.addToInventory(artefact);
             loc.removeArtefact(item);
+            loc.publish(this.journalSequence);
+            player.publish(this.journalSequence);
             StringBuilder messageBuilder = new StringBuilder();
             messageBuilder.append("You picked up ");
             messageBuilder.append(artefact.getName());
@@ -136,11 +240,13 @@ public class GameState {
 
     public String dropItem(String playerName, String item) {
         Player player = this.players.get(playerName);
-        Location loc = this.locations.get(player.getLocation());
+        Location loc = this.getLocation(player.getLocationId());
         if (player.hasItem(item)) {
             GameEntity artefact = new Artefact(item, player.getItemDescription(item));
             player.removeFromInventory(item);
             loc.addArtefact(artefact);
+            loc.publish(this.journalSequence);
+            player.publish(this.journalSequence);
             StringBuilder messageBuilder = new StringBuilder();
             messageBuilder.append("You dropped ");
             messageBuilder.append(item);
@@ -151,16 +257,17 @@ public class GameState {
 
     public String gotoLocation(String playerName, String destination) {
         Player player = this.players.get(playerName);
-        Location current = this.locations.get(player.getLocation());
-        if (player.getLocation().equalsIgnoreCase(destination)) {
+        Location current = this.getLocation(player.getLocationId());
+        int destinationId = this.symbols.id(destination);
+        if (player.getLocationId() == destinationId) {
             StringBuilder messageBuilder = new StringBuilder();
             messageBuilder.append("You are already in ");
             messageBuilder.append(destination);
             return messageBuilder.toString();
         }
 
-        if (current.hasPath(destination)) {
-            player.setLocation(destination);
+        if (current.hasPath(destinationId)) {
+            this.movePlayer(player, current, destinationId);
             StringBuilder messageBuilder = new StringBuilder();
             messageBuilder.append("You moved to ");
             messageBuilder.append(destination);
@@ -171,12 +278,12 @@ public class GameState {
 
     public String inventory(String playerName) {
         Player player = this.players.get(playerName);
-        return player.getInventory();
+        return player.publish(this.journalSequence).inventory;
     }
 
     public String executeAction(String playerName, GameAction action) {
         Player player = this.players.get(playerName);
-        Location currentLocation = this.locations.get(player.getLocation());
+        Location currentLocation = this.getLocation(player.getLocationId());
         Location storeroom = this.getStoreroom();
 
         if (player == null || currentLocation == null) {
@@ -185,12 +292,13 @@ public class GameState {
 
         for (String subject : action.getSubjects()) {
             if (!isSubjectAvailable(subject, currentLocation, player)) {
-                return this.checkSubjectAvailabilityWithOtherPlayers(subject, playerName);
+                return this.checkSubjectAvailabilityWithOtherPlayers(subject, player);
             }
         }
         String narration = action.getNarration();
         this.consumeEntities(action.getConsumed(), player, currentLocation, storeroom);
         this.produceEntities(action.getProduced(), currentLocation, storeroom, player);
+        currentLocation.publish(this.journalSequence);
 
         StringBuilder result = new StringBuilder();
         result.append(narration);
@@ -198,19 +306,36 @@ public class GameState {
             result.append("\nYou died and lost all of your items, you will return to the start location of the game");
             player.resetHealth();
         }
+        player.publish(this.journalSequence);
         return result.toString();
     }
+    //the arrival is handed over before the player's location changes, so a command routed by the new
+    //location can never run ahead of it
+    private void movePlayer(Player player, Location from, int destination) {
+        from.removePlayer(player);
+        from.publish(this.journalSequence);
+        Location to = this.getLocation(destination);
+        if (to != null) this.arrivals.accept(to, () -> this.arrive(player, to));
+        player.setLocation(destination);
+        player.publish(this.journalSequence);
+    }
+
+    private void arrive(Player player, Location to) {
+        to.addPlayer(player);
+        to.publish(this.journalSequence);
+    }
+
     private boolean isSubjectAvailable(String subject, Location loc, Player player) {
         return loc.hasArtefact(subject) || loc.hasFurniture(subject) || loc.hasCharacter(subject) || player.hasItem(subject);
     }
 
-    private String checkSubjectAvailabilityWithOtherPlayers(String subject, String playerName) {
-        for (Player other : this.players.values()) {
-            if (!other.getName().equals(playerName) && other.hasItem(subject)) {
-                StringBuilder messageBuilder = new StringBuilder();
-                messageBuilder.append("Subject '").append(subject).append("' is not available");
-                return messageBuilder.toString();
-            }
+    private String checkSubjectAvailabilityWithOtherPlayers(String subject, Player player) {
+        int id = this.symbols.id(subject);
+        int heldByPlayer = player.hasItem(id) ? 1 : 0;
+        if (this.holders.count(id) > heldByPlayer) {
+            StringBuilder messageBuilder = new StringBuilder();
+            messageBuilder.append("Subject '").append(subject).append("' is not available");
+            return messageBuilder.toString();
         }
         return null;
     }
@@ -219,28 +344,19 @@ public class GameState {
         for (String item : consumed) {
             if (!item.isEmpty()) {
                 if (item.equals("health")) {
-                    player.decreaseHealth(loc, this.startLocation);
-                } else if (this.locations.containsKey(item)) {
+                    if (player.decreaseHealth(loc)) {
+                        this.movePlayer(player, loc, this.symbols.intern(this.startLocation));
+                    }
+                } else if (this.getLocation(this.symbols.id(item)) != null) {
                     loc.removePath(item);
                 } else if (loc.hasArtefact(item)) {
                     loc.removeArtefact(item);
-                    if (storeroom != null) {
-                        String itemName = item;
-                        String description = String.format("A %s", itemName);
-                        Artefact artefact = new Artefact(itemName, description);
-                        storeroom.addArtefact(artefact);
-                    }
+                    this.returnToStoreroom(item, storeroom);
                 } else if (loc.hasFurniture(item)) {
                     loc.removeFurniture(item);
                 } else if (player.hasItem(item)) {
                     player.removeFromInventory(item);
-                    if (storeroom != null) {
-                        String itemName = item;
-                        String description = String.format("A %s", itemName);
-                        Artefact artefact = new Artefact(itemName, description);
-                        storeroom.addArtefact(artefact);
-                    }
-
+                    this.returnToStoreroom(item, storeroom);
                 }
             }
         }
@@ -251,25 +367,10 @@ public class GameState {
             if (!item.isEmpty()) {
                 if (item.equals("health")) {
                     player.increaseHealth();
-                } else if (this.locations.containsKey(item)) {
+                } else if (this.getLocation(this.symbols.id(item)) != null) {
                     loc.addPath(item);
                 } else {
-                    GameEntity entity = null;
-                    if (storeroom != null) {
-                        if (storeroom.hasArtefact(item)) {
-                            entity = storeroom.getArtefactEntity(item);
-                            storeroom.removeArtefact(item);
-                            loc.addArtefact(entity);
-                        } else if (storeroom.hasFurniture(item)) {
-                            entity = storeroom.getFurnitureEntity(item);
-                            storeroom.removeFurniture(item);
-                            loc.addFurniture(entity);
-                        } else if (storeroom.hasCharacter(item)) {
-                            entity = storeroom.getCharacterEntity(item);
-                            storeroom.removeCharacter(item);
-                            loc.addCharacter(entity);
-                        }
-                    }
+                    GameEntity entity = this.takeFromStoreroom(item, storeroom, loc);
                     if (entity == null) {
                         StringBuilder desc = new StringBuilder();
                         desc.append("A ").append(item);
@@ -281,6 +382,37 @@ public class GameState {
         }
     }
 
+    //the storeroom belongs to no shard, every shard's actions take its lock to move entities in or out
+    private void returnToStoreroom(String item, Location storeroom) {
+        if (storeroom == null) return;
+        String description = String.format("A %s", item);
+        Artefact artefact = new Artefact(item, description);
+        synchronized (storeroom) {
+            storeroom.addArtefact(artefact);
+        }
+    }
+
+    private GameEntity takeFromStoreroom(String item, Location storeroom, Location loc) {
+        if (storeroom == null) return null;
+        GameEntity entity = null;
+        synchronized (storeroom) {
+            if (storeroom.hasArtefact(item)) {
+                entity = storeroom.getArtefactEntity(item);
+                storeroom.removeArtefact(item);
+                loc.addArtefact(entity);
+            } else if (storeroom.hasFurniture(item)) {
+                entity = storeroom.getFurnitureEntity(item);
+                storeroom.removeFurniture(item);
+                loc.addFurniture(entity);
+            } else if (storeroom.hasCharacter(item)) {
+                entity = storeroom.getCharacterEntity(item);
+                storeroom.removeCharacter(item);
+                loc.addCharacter(entity);
+            }
+        }
+        return entity;
+    }
+
     private void appendIfNotEmpty(String content, String prefix, StringBuilder desc) {
         if (!content.isEmpty()) {
             desc.append(prefix);
@@ -292,28 +424,33 @@ public class GameState {
         return this.players.get(name);
     }
 
+    public Collection<Player> getPlayersAt(int locationId) {
+        Location location = this.getLocation(locationId);
+        return location == null ? Collections.emptyList() : location.getPlayers();
+    }
+
     public Map<String, Player> getPlayers() {
         return this.players;
     }
 
     public void addAction(GameAction action) {
-        Iterator<String> triggerIterator = action.getTriggers().iterator();
-        while (triggerIterator.hasNext()) {
-            String trigger = triggerIterator.next();
-            LinkedList<GameAction> actionList = this.actionsByTrigger.get(trigger);
-            if (actionList == null) {
-                actionList = new LinkedList<>();
-                this.actionsByTrigger.put(trigger, actionList);
-            }
-            actionList.add(action);
+        for (String trigger : this.actionIndex.addAction(action)) {
+            this.vocabulary.addTrigger(trigger);
         }
     }
 
+    //a command reads the index once, so it matches against either the old actions or the new ones
+    ActionIndex replaceActions(ActionIndex actions) {
+        ActionIndex replaced = this.actionIndex;
+        this.actionIndex = actions;
+        return replaced;
+    }
+
     public LinkedList<GameAction> getActionsByTrigger(String trigger) {
-        return this.actionsByTrigger.getOrDefault(trigger, new LinkedList<>());
+        return this.actionIndex.getActions(trigger);
     }
 
-    public LinkedList<String> getAllTriggers() {
-        return new LinkedList<>(this.actionsByTrigger.keySet());
+    public ActionIndex getActionIndex() {
+        return this.actionIndex;
     }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package edu.uob;
+
+import java.util.Arrays;
+
+//how many players carry an entity of each symbol id, so availability checks need not visit every player
+//synchronized because players in different shards pick up and drop items at the same time
+public class HolderIndex {
+    private int[] counts;
+
+    public HolderIndex() {
+        this.counts = new int[16];
+    }
+
+    public synchronized void add(int id) {
+        if (id >= this.counts.length) {
+            this.counts = Arrays.copyOf(this.counts, Math.max(id + 1, this.counts.length * 2));
+        }
+        this.counts[id]++;
+    }
+
+    public synchronized void remove(int id) {
+        if (id >= 0 && id < this.counts.length && this.counts[id] > 0) {
+            this.counts[id]--;
+        }
+    }
+
+    public synchronized int count(int id) {
+        return id >= 0 && id < this.counts.length ? this.counts[id] : 0;
+    }
+}
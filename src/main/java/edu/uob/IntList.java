@@ -0,0 +1,51 @@
+package edu.uob;
+
+import java.util.Arrays;
+
+//growable list of ints, kept in insertion order without boxing
+public class IntList {
+    private int[] values;
+    private int size;
+
+    public IntList() {
+        this.values = new int[2];
+        this.size = 0;
+    }
+
+    public void add(int value) {
+        if (this.size == this.values.length) this.values = Arrays.copyOf(this.values, this.size * 2);
+        this.values[this.size++] = value;
+    }
+
+    //removes the first occurrence only, like LinkedList.remove(Object)
+    public boolean remove(int value) {
+        int index = this.indexOf(value);
+        if (index < 0) return false;
+        System.arraycopy(this.values, index + 1, this.values, index, this.size - index - 1);
+        this.size--;
+        return true;
+    }
+
+    public boolean contains(int value) {
+        return this.indexOf(value) >= 0;
+    }
+
+    public int indexOf(int value) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.values[i] == value) return i;
+        }
+        return -1;
+    }
+
+    public int get(int index) {
+        return this.values[index];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+}
@@ -1,25 +1,46 @@
 package edu.uob;
 
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Location {
     private String name;
+    private final int id;
     private String description;
+    private final SymbolTable symbols;
     private final EntityList artefacts;
     private final EntityList furniture;
-    private final LinkedList<String> paths;
+    private final PathGraph paths;
     private final EntityList characters;
-    private LinkedList<Player> players;
+    private final LinkedHashSet<Player> players;
+    private String scene;
+    //copy-on-write view for readers that take no lock, stale from the first change until publish()
+    private final AtomicReference<Snapshot> snapshot;
+    private volatile boolean stale;
 
     public Location(String name, String description) {
+        this(name, description, null);
+    }
+
+    public Location(String name, String description, Vocabulary vocabulary) {
+        this(name, description, vocabulary, null);
+    }
+
+    //locations of one world share its path graph, a standalone location gets a graph of its own
+    public Location(String name, String description, Vocabulary vocabulary, PathGraph paths) {
         this.name = name;
+        this.symbols = vocabulary == null ? new SymbolTable() : vocabulary.getSymbols();
+        this.id = this.symbols.intern(name);
         this.description = description;
-        this.artefacts = new EntityList();
-        this.furniture = new EntityList();
-        this.paths = new LinkedList<>();
-        this.characters = new EntityList();
-        this.players = new LinkedList<>();
+        this.artefacts = new EntityList(vocabulary);
+        this.furniture = new EntityList(vocabulary);
+        this.paths = paths == null ? new PathGraph(this.symbols) : paths;
+        this.characters = new EntityList(vocabulary);
+        this.players = new LinkedHashSet<>();
+        this.snapshot = new AtomicReference<>();
+        this.stale = true;
     }
 
     public LinkedList<GameEntity> getEntities(String type) {
@@ -35,40 +56,57 @@ public class Location {
         return this.name;
     }
 
+    public int getId() {
+        return this.id;
+    }
+
     public String getDescription() {
         return this.description;
     }
 
     public void setDescription(String desc) {
         this.description = desc;
+        this.changed();
     }
 
     public void addArtefact(GameEntity entity) {
         this.artefacts.add(entity);
+        this.changed();
     }
 
     public void removeArtefact(String name) {
         this.artefacts.remove(name);
+        this.changed();
     }
 
     public boolean hasArtefact(String name) {
         return this.artefacts.contains(name);
     }
 
+    public boolean hasArtefact(int id) {
+        return this.artefacts.contains(id);
+    }
+
     public String getArtefacts() {
         return this.buildDiscription(this.artefacts);
     }
 
     public void addFurniture(GameEntity entity) {
         this.furniture.add(entity);
+        this.changed();
     }
 
     public void removeFurniture(String name) {
         this.furniture.remove(name);
+        this.changed();
     }
 
     public boolean hasFurniture(String name) {
-        return this.furniture.contains(name.toLowerCase());
+        return this.furniture.contains(name);
+    }
+
+    public boolean hasFurniture(int id) {
+        return this.furniture.contains(id);
     }
 
     public String getFurniture() {
@@ -80,41 +118,58 @@ public class Location {
     }
 
     public void addPath(String name) {
-        this.paths.add(name);
+        this.paths.addPath(this.id, this.symbols.intern(name));
+        this.stale = true;
+    }
+
+    public void addPath(int id) {
+        this.paths.addPath(this.id, id);
+        this.stale = true;
     }
 
     public void removePath(String name) {
-        this.paths.remove(name);
+        this.paths.removePath(this.id, this.symbols.id(name));
+        this.stale = true;
+    }
+
+    public void clearPaths() {
+        this.paths.clearPaths(this.id);
+        this.stale = true;
     }
 
     public boolean hasPath(String name) {
-        return this.paths.contains(name);
+        return this.hasPath(this.symbols.id(name));
     }
 
-    public String getPaths() {
-        if (this.paths.isEmpty()) {
-            return "";
-        }
-        StringBuilder sb = new StringBuilder();
-        Iterator<String> iterator = this.paths.iterator();
-        while (iterator.hasNext()) {
-            String path = iterator.next();
-            sb.append(path);
-            if (iterator.hasNext()) {
-                sb.append(", ");
-            }
+    public boolean hasPath(int id) {
+        return this.paths.hasPath(this.id, id);
+    }
+
+    public LinkedList<String> getPathNames() {
+        LinkedList<String> names = new LinkedList<>();
+        for (int target : this.paths.targets(this.id)) {
+            names.add(this.symbols.name(target));
         }
-        return sb.toString();
+        return names;
+    }
+
+    public String getPaths() {
+        return this.paths.describe(this.id);
     }
 
     public void addCharacter(GameEntity entity) {
         this.characters.add(entity);
+        this.changed();
     }
 
     public boolean hasCharacter(String name) {
         return this.characters.contains(name);
     }
 
+    public boolean hasCharacter(int id) {
+        return this.characters.contains(id);
+    }
+
     public String getCharacters() {
         return this.buildDiscription(this.characters);
     }
@@ -125,26 +180,91 @@ public class Location {
 
     public void removeCharacter(String name) {
         this.characters.remove(name);
+        this.changed();
     }
 
     public GameEntity getArtefactEntity(String name) {
         return this.artefacts.getEntity(name);
     }
 
+    public void clearEntities() {
+        this.artefacts.clear();
+        this.furniture.clear();
+        this.characters.clear();
+        this.changed();
+    }
 
-    private String buildDiscription(EntityList entityList) {
-        if (!entityList.hasEntities()) {
-            return "";
-        }
-        StringBuilder sb = new StringBuilder();
-        Iterator<GameEntity> iterator = entityList.getEntities().iterator();
-        while (iterator.hasNext()) {
-            GameEntity entity = iterator.next();
-            sb.append(entity.getDescription());
-            if (iterator.hasNext()) {
-                sb.append(", ");
+    //players standing here, in the order they arrived
+    public void addPlayer(Player player) {
+        this.players.add(player);
+        this.stale = true;
+    }
+
+    public void removePlayer(Player player) {
+        this.players.remove(player);
+        this.stale = true;
+    }
+
+    public Collection<Player> getPlayers() {
+        return this.players;
+    }
+
+    //the part of a look that only depends on this location, rebuilt after its entities change
+    public String getScene() {
+        if (this.scene == null) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("You are in ").append(this.description).append(".\n");
+            if (!this.artefacts.describe().isEmpty()) {
+                sb.append("You can see: \n").append(this.artefacts.describe()).append("\n");
+            }
+            if (!this.furniture.describe().isEmpty()) {
+                sb.append(this.furniture.describe()).append("\n");
             }
+            if (!this.characters.describe().isEmpty()) {
+                sb.append(this.characters.describe()).append("\n");
+            }
+            this.scene = sb.toString();
+        }
+        return this.scene;
+    }
+
+    private void changed() {
+        this.scene = null;
+        this.stale = true;
+    }
+
+    //called by the writer that changed this location once its command is applied, sequence is the last
+    //journal record appended, which covers every change the snapshot shows
+    public Snapshot publish(long sequence) {
+        Snapshot current = this.snapshot.get();
+        if (this.stale || current == null) {
+            current = new Snapshot(this.getScene(), this.players.toArray(new Player[0]), this.getPaths(), sequence);
+            this.snapshot.set(current);
+            this.stale = false;
+        }
+        return current;
+    }
+
+    //null while a change is waiting to be published, the reader then has to go through a writer
+    public Snapshot getSnapshot() {
+        return this.stale ? null : this.snapshot.get();
+    }
+
+    public static final class Snapshot {
+        public final String scene;
+        public final Player[] players;
+        public final String paths;
+        public final long sequence;
+
+        Snapshot(String scene, Player[] players, String paths, long sequence) {
+            this.scene = scene;
+            this.players = players;
+            this.paths = paths;
+            this.sequence = sequence;
         }
-        return sb.toString();
+    }
+
+    private String buildDiscription(EntityList entityList) {
+        return entityList.describe();
     }
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package edu.uob;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//serves the metrics as plain text on GET /metrics, bound to the loopback address only
+public class MetricsEndpoint implements Closeable {
+    private final ServerMetrics metrics;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public MetricsEndpoint(ServerMetrics metrics, int port) throws IOException {
+        this.metrics = metrics;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "stag-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/metrics", this::handle);
+    }
+
+    public void start() {
+        this.server.start();
+    }
+
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (HttpExchange open = exchange) {
+            if (!open.getRequestMethod().equals("GET")) {
+                open.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = this.metrics.render().getBytes(StandardCharsets.UTF_8);
+            open.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            open.sendResponseHeaders(200, body.length);
+            try (OutputStream out = open.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdown();
+    }
+}
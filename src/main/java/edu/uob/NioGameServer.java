@@ -0,0 +1,332 @@
+package edu.uob;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+//multiplexes many open sessions over a few selector threads instead of one blocked thread per socket
+public class NioGameServer implements Closeable {
+    private static final char END_OF_TRANSMISSION = 4;
+    private static final int READ_BUFFER_SIZE = 512;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final GameServer server;
+    private final ServerSocketChannel serverChannel;
+    private final Selector acceptSelector;
+    private final EventLoop[] loops;
+    private final Thread acceptThread;
+    private int nextLoop;
+
+    public NioGameServer(GameServer server, int portNumber, int selectorThreads) throws IOException {
+        this.server = server;
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(portNumber));
+        this.serverChannel.configureBlocking(false);
+        this.acceptSelector = Selector.open();
+        this.serverChannel.register(this.acceptSelector, SelectionKey.OP_ACCEPT);
+        this.loops = new EventLoop[Math.max(1, selectorThreads)];
+        for (int i = 0; i < this.loops.length; i++) {
+            this.loops[i] = new EventLoop(i);
+        }
+        this.acceptThread = new Thread(this::acceptLoop, "stag-nio-acceptor");
+    }
+
+    public int getPort() {
+        return this.serverChannel.socket().getLocalPort();
+    }
+
+    public void start() {
+        for (EventLoop loop : this.loops) {
+            loop.thread.start();
+        }
+        this.acceptThread.start();
+    }
+
+    public void join() throws InterruptedException {
+        this.acceptThread.join();
+    }
+
+    private void acceptLoop() {
+        try {
+            while (this.serverChannel.isOpen()) {
+                this.acceptSelector.select();
+                Iterator<SelectionKey> keys = this.acceptSelector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    keys.next();
+                    keys.remove();
+                    SocketChannel channel = this.serverChannel.accept();
+                    while (channel != null) {
+                        channel.configureBlocking(false);
+                        this.loops[this.nextLoop].register(channel);
+                        this.nextLoop = (this.nextLoop + 1) % this.loops.length;
+                        channel = this.serverChannel.accept();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            ServerLog.get().info("Server channel closed");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.serverChannel.close();
+        this.acceptSelector.close();
+        for (EventLoop loop : this.loops) {
+            loop.selector.close();
+        }
+    }
+
+    private class EventLoop {
+        private final Selector selector;
+        private final Thread thread;
+        private final ConcurrentLinkedQueue<SocketChannel> pending;
+        private final ConcurrentLinkedQueue<Runnable> tasks;
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.pending = new ConcurrentLinkedQueue<>();
+            this.tasks = new ConcurrentLinkedQueue<>();
+            this.thread = new Thread(this::run, "stag-nio-loop-" + index);
+        }
+
+        void register(SocketChannel channel) {
+            this.pending.add(channel);
+            this.selector.wakeup();
+        }
+
+        //runs the task on this loop's thread, used by replies completed on a writer thread
+        void post(Runnable task) {
+            this.tasks.add(task);
+            this.selector.wakeup();
+        }
+
+        private void run() {
+            try {
+                while (this.selector.isOpen()) {
+                    this.selector.select();
+                    this.registerPending();
+                    this.runTasks();
+                    Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        this.handle(key);
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                ServerLog.get().info("Event loop closed");
+            }
+        }
+
+        private void registerPending() throws IOException {
+            SocketChannel channel = this.pending.poll();
+            while (channel != null) {
+                Connection connection = new Connection(channel, this);
+                connection.key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+                channel = this.pending.poll();
+            }
+        }
+
+        private void runTasks() {
+            Runnable task = this.tasks.poll();
+            while (task != null) {
+                task.run();
+                task = this.tasks.poll();
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isValid() && key.isWritable()) connection.flush(key);
+                if (key.isValid() && key.isReadable()) connection.read(key);
+            } catch (IOException e) {
+                connection.close(key);
+            }
+        }
+    }
+
+    private class Connection {
+        private final SocketChannel channel;
+        private final EventLoop loop;
+        private SelectionKey key;
+        //completes once every earlier reply has been handed to this loop, keeping replies in command order
+        private CompletableFuture<Void> replies;
+        //replies handed over but not yet queued for writing, only touched on this loop's thread
+        private int undelivered;
+        //set while the game loop has no room for the current line, reading stops until it has, and the
+        //line and whatever followed it in the read buffer are kept for then
+        private boolean stalled;
+        private final ByteBuffer readBuffer;
+        private ByteBuffer writeBuffer;
+        private byte[] line;
+        private int lineLength;
+
+        Connection(SocketChannel channel, EventLoop loop) {
+            this.channel = channel;
+            this.loop = loop;
+            this.replies = CompletableFuture.completedFuture(null);
+            this.readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+            this.line = new byte[64];
+        }
+
+        void read(SelectionKey key) throws IOException {
+            if (this.stalled) return;
+            long reading = System.nanoTime();
+            int read = this.channel.read(this.readBuffer);
+            NioGameServer.this.server.getMetrics().record(ServerMetrics.Stage.SOCKET_READ, System.nanoTime() - reading);
+            if (read < 0) {
+                this.close(key);
+                return;
+            }
+            this.readBuffer.flip();
+            this.consume();
+            this.flush(key);
+        }
+
+        //parses what is left in the read buffer, stopping at a line the game loop has no room for
+        private void consume() throws IOException {
+            while (this.readBuffer.hasRemaining()) {
+                byte next = this.readBuffer.get();
+                if (next == '\n') {
+                    if (!this.dispatch()) {
+                        this.stall();
+                        return;
+                    }
+                } else {
+                    this.append(next);
+                }
+            }
+            this.readBuffer.clear();
+        }
+
+        private void stall() {
+            this.stalled = true;
+            this.key.interestOps(this.interest());
+            NioGameServer.this.server.whenRoom(() -> this.loop.post(this::resume));
+        }
+
+        //on this loop's thread once the game loop has room: the kept line goes first, then the rest
+        private void resume() {
+            if (!this.stalled || !this.key.isValid()) return;
+            this.stalled = false;
+            try {
+                if (!this.dispatch()) {
+                    this.stall();
+                    return;
+                }
+                this.consume();
+                this.key.interestOps(this.interest());
+                this.flush(this.key);
+            } catch (IOException e) {
+                this.close(this.key);
+            }
+        }
+
+        //output backed up waits for OP_WRITE, a stalled connection waits for the game loop
+        private int interest() {
+            if (this.writeBuffer != null && this.writeBuffer.position() > 0) return SelectionKey.OP_WRITE;
+            return this.stalled ? 0 : SelectionKey.OP_READ;
+        }
+
+        private void append(byte next) throws IOException {
+            if (this.lineLength == MAX_LINE_LENGTH) throw new IOException("Command line too long");
+            if (this.lineLength == this.line.length) {
+                byte[] grown = new byte[Math.min(this.line.length * 2, MAX_LINE_LENGTH)];
+                System.arraycopy(this.line, 0, grown, 0, this.lineLength);
+                this.line = grown;
+            }
+            this.line[this.lineLength++] = next;
+        }
+
+        //false, keeping the line, when the game loop has no room for it
+        private boolean dispatch() {
+            int length = this.lineLength;
+            if (length > 0 && this.line[length - 1] == '\r') length--;
+            String command = new String(this.line, 0, length, StandardCharsets.UTF_8);
+            long started = System.nanoTime();
+            CompletableFuture<String> reply = NioGameServer.this.server.submitCommand(command, this.undelivered == 0, false);
+            if (reply == null) return false;
+            this.lineLength = 0;
+            if (this.undelivered == 0 && reply.isDone() && !reply.isCompletedExceptionally()) {
+                String result = reply.join();
+                ServerLog.get().command(command, result, System.nanoTime() - started);
+                this.queue(encode(result));
+                return true;
+            }
+            reply.thenAccept(result -> ServerLog.get().command(command, result, System.nanoTime() - started));
+            //a writer thread completes the reply, it is written back on this loop's thread
+            this.undelivered++;
+            this.replies = this.replies.thenCombine(reply, (previous, result) -> result)
+                    .thenAccept(result -> this.loop.post(() -> this.deliver(result)))
+                    .exceptionally(e -> {
+                        this.loop.post(() -> this.close(this.key));
+                        return null;
+                    });
+            return true;
+        }
+
+        private void deliver(String result) {
+            this.undelivered--;
+            if (!this.key.isValid()) return;
+            this.queue(encode(result));
+            try {
+                this.flush(this.key);
+            } catch (IOException e) {
+                this.close(this.key);
+            }
+        }
+
+        private byte[] encode(String result) {
+            StringBuilder output = new StringBuilder();
+            output.append(result);
+            output.append("\n");
+            output.append(END_OF_TRANSMISSION);
+            output.append("\n");
+            return output.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        private void queue(byte[] reply) {
+            if (this.writeBuffer == null) {
+                this.writeBuffer = ByteBuffer.allocateDirect(Math.max(READ_BUFFER_SIZE, reply.length));
+            } else if (this.writeBuffer.remaining() < reply.length) {
+                ByteBuffer grown = ByteBuffer.allocateDirect(this.writeBuffer.position() + reply.length);
+                this.writeBuffer.flip();
+                grown.put(this.writeBuffer);
+                this.writeBuffer = grown;
+            }
+            this.writeBuffer.put(reply);
+        }
+
+        //writes what the socket accepts, and waits for OP_WRITE instead of reading while output is backed up
+        void flush(SelectionKey key) throws IOException {
+            if (this.writeBuffer == null || this.writeBuffer.position() == 0) return;
+            this.writeBuffer.flip();
+            long writing = System.nanoTime();
+            this.channel.write(this.writeBuffer);
+            NioGameServer.this.server.getMetrics().record(ServerMetrics.Stage.SOCKET_WRITE, System.nanoTime() - writing);
+            this.writeBuffer.compact();
+            key.interestOps(this.interest());
+        }
+
+        void close(SelectionKey key) {
+            key.cancel();
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                ServerLog.get().debug("Connection closed");
+            }
+        }
+    }
+}
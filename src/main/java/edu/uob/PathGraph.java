@@ -0,0 +1,166 @@
+package edu.uob;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+//every path in the world, rows indexed by location id: loaded paths are packed into CSR arrays by
+//compact(), rows that actions change afterwards are replaced in an overlay until the next compact()
+//shards share one graph, so neither the packed arrays nor an overlay row is ever changed once readers
+//can see it: a change copies its row and puts the copy in the overlay, compact() publishes new arrays.
+//Reads take no lock, writes are serialised
+public class PathGraph {
+    private static final int[] NO_TARGETS = new int[0];
+
+    private final SymbolTable symbols;
+    private volatile Packed packed;
+    private final ConcurrentHashMap<Integer, Row> overlay;
+
+    public PathGraph(SymbolTable symbols) {
+        this.symbols = symbols;
+        this.packed = new Packed(new int[] {0}, NO_TARGETS);
+        this.overlay = new ConcurrentHashMap<>();
+    }
+
+    //a path that already exists is not added twice
+    public synchronized void addPath(int from, int to) {
+        int[] row = this.targets(from);
+        if (indexOf(row, to) >= 0) return;
+        int[] grown = Arrays.copyOf(row, row.length + 1);
+        grown[row.length] = to;
+        this.overlay.put(from, new Row(grown));
+    }
+
+    public synchronized void removePath(int from, int to) {
+        int[] row = this.targets(from);
+        int index = indexOf(row, to);
+        if (index < 0) return;
+        int[] shrunk = new int[row.length - 1];
+        System.arraycopy(row, 0, shrunk, 0, index);
+        System.arraycopy(row, index + 1, shrunk, index, row.length - index - 1);
+        this.overlay.put(from, new Row(shrunk));
+    }
+
+    public synchronized void clearPaths(int from) {
+        if (this.degree(from) > 0) this.overlay.put(from, new Row(NO_TARGETS));
+    }
+
+    public boolean hasPath(int from, int to) {
+        if (from < 0 || to < 0) return false;
+        Row row = this.overlay.get(from);
+        if (row != null) return indexOf(row.targets, to) >= 0;
+        Packed current = this.packed;
+        if (from + 1 >= current.offsets.length) return false;
+        for (int i = current.offsets[from]; i < current.offsets[from + 1]; i++) {
+            if (current.targets[i] == to) return true;
+        }
+        return false;
+    }
+
+    //degree and target are read separately, a caller that walks a row another thread may change
+    //should take it whole from targets()
+    public int degree(int from) {
+        Row row = this.overlay.get(from);
+        if (row != null) return row.targets.length;
+        Packed current = this.packed;
+        if (from < 0 || from + 1 >= current.offsets.length) return 0;
+        return current.offsets[from + 1] - current.offsets[from];
+    }
+
+    public int target(int from, int index) {
+        Row row = this.overlay.get(from);
+        if (row != null) return row.targets[index];
+        Packed current = this.packed;
+        return current.targets[current.offsets[from] + index];
+    }
+
+    //a copy of the row as it stood at one moment
+    public int[] targets(int from) {
+        Row row = this.overlay.get(from);
+        if (row != null) return row.targets.clone();
+        Packed current = this.packed;
+        if (from < 0 || from + 1 >= current.offsets.length) return NO_TARGETS;
+        return Arrays.copyOfRange(current.targets, current.offsets[from], current.offsets[from + 1]);
+    }
+
+    //comma separated destination names, rendered once per change to the row
+    public String describe(int from) {
+        Row row = this.overlay.get(from);
+        if (row != null) {
+            String listing = row.listing;
+            if (listing == null) {
+                listing = this.render(row.targets, 0, row.targets.length);
+                row.listing = listing;
+            }
+            return listing;
+        }
+        Packed current = this.packed;
+        if (from < 0 || from + 1 >= current.offsets.length) return "";
+        //a packed row never changes, so its listing can be cached with the arrays it was rendered from
+        String listing = current.listings[from];
+        if (listing == null) {
+            listing = this.render(current.targets, current.offsets[from], current.offsets[from + 1]);
+            current.listings[from] = listing;
+        }
+        return listing;
+    }
+
+    private String render(int[] targets, int start, int end) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = start; i < end; i++) {
+            if (i > start) {
+                sb.append(", ");
+            }
+            sb.append(this.symbols.name(targets[i]));
+        }
+        return sb.toString();
+    }
+
+    //folds the overlay back into new packed arrays, called once the world has finished loading
+    public synchronized void compact() {
+        int rows = this.packed.offsets.length - 1;
+        for (int from : this.overlay.keySet()) {
+            rows = Math.max(rows, from + 1);
+        }
+        int[] packedOffsets = new int[rows + 1];
+        for (int from = 0; from < rows; from++) {
+            packedOffsets[from + 1] = packedOffsets[from] + this.degree(from);
+        }
+        int[] packedTargets = new int[packedOffsets[rows]];
+        for (int from = 0; from < rows; from++) {
+            int[] row = this.targets(from);
+            System.arraycopy(row, 0, packedTargets, packedOffsets[from], row.length);
+        }
+        //published before the overlay rows go, a reader that misses a row in the overlay finds it here
+        this.packed = new Packed(packedOffsets, packedTargets);
+        this.overlay.clear();
+    }
+
+    private static int indexOf(int[] row, int to) {
+        for (int i = 0; i < row.length; i++) {
+            if (row[i] == to) return i;
+        }
+        return -1;
+    }
+
+    private static final class Packed {
+        private final int[] offsets;
+        private final int[] targets;
+        //filled in by readers as rows are described, a race only renders the same listing twice
+        private final String[] listings;
+
+        Packed(int[] offsets, int[] targets) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.listings = new String[offsets.length - 1];
+        }
+    }
+
+    private static final class Row {
+        private final int[] targets;
+        private volatile String listing;
+
+        Row(int[] targets) {
+            this.targets = targets;
+        }
+    }
+}
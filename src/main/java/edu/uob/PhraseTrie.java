@@ -0,0 +1,224 @@
+package edu.uob;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.LinkedList;
+
+//token trie over keyphrases and names, every terminal node carries the kinds of word it stands for
+//marks and unmarks are serialised, scans take no lock at all: a node's child table is only ever added
+//to, each entry is published by a release store of its token, a full table is copied and the copy
+//swapped in through a volatile field, and the kinds of a node are a single volatile int
+public class PhraseTrie {
+    public static final int TRIGGER = 1;
+    public static final int ENTITY = 2;
+    public static final int LOCATION = 4;
+    public static final int PLAYER = 8;
+
+    private final Node root;
+
+    public PhraseTrie() {
+        this.root = new Node("");
+    }
+
+    public static String[] tokenise(String phrase) {
+        String trimmed = phrase.trim().toLowerCase();
+        if (trimmed.isEmpty()) return new String[0];
+        return trimmed.split("\\s+");
+    }
+
+    public static String canonical(String phrase) {
+        return String.join(" ", tokenise(phrase));
+    }
+
+    public synchronized void mark(String phrase, int kind) {
+        String[] tokens = tokenise(phrase);
+        if (tokens.length == 0) return;
+        Node node = this.root;
+        for (String token : tokens) {
+            node = node.childOrCreate(token);
+        }
+        node.flags |= kind;
+    }
+
+    //nodes are never removed, so a scan running alongside never loses its way
+    public synchronized void unmark(String phrase, int kind) {
+        Node node = this.root;
+        for (String token : tokenise(phrase)) {
+            node = node.child(token, 0, token.length());
+            if (node == null) return;
+        }
+        node.flags &= ~kind;
+    }
+    //single left-to-right pass, taking the longest phrase that starts at each position
+    public LinkedList<Match> scan(String[] words) {
+        LinkedList<Match> matches = new LinkedList<>();
+        int position = 0;
+        while (position < words.length) {
+            Node node = this.root;
+            Node longest = null;
+            int longestFlags = 0;
+            int longestLength = 0;
+            int index = position;
+            while (index < words.length) {
+                node = node.child(words[index], 0, words[index].length());
+                if (node == null) break;
+                index++;
+                int flags = node.flags;
+                if (flags != 0) {
+                    longest = node;
+                    longestFlags = flags;
+                    longestLength = index - position;
+                }
+            }
+            if (longest == null) {
+                position++;
+            } else {
+                matches.add(new Match(longest.phrase, longestFlags));
+                position += longestLength;
+            }
+        }
+        return matches;
+    }
+
+    //the same scan over the word spans of a tokenised command, words are never copied out
+    public LinkedList<Match> scan(CommandTokenizer tokens) {
+        LinkedList<Match> matches = new LinkedList<>();
+        String source = tokens.getSource();
+        int position = 0;
+        while (position < tokens.size()) {
+            Node node = this.root;
+            Node longest = null;
+            int longestFlags = 0;
+            int longestLength = 0;
+            int index = position;
+            while (index < tokens.size()) {
+                node = node.child(source, tokens.start(index), tokens.end(index));
+                if (node == null) break;
+                index++;
+                int flags = node.flags;
+                if (flags != 0) {
+                    longest = node;
+                    longestFlags = flags;
+                    longestLength = index - position;
+                }
+            }
+            if (longest == null) {
+                position++;
+            } else {
+                matches.add(new Match(longest.phrase, longestFlags));
+                position += longestLength;
+            }
+        }
+        return matches;
+    }
+
+    public static class Match {
+        public final String phrase;
+        public final int flags;
+
+        public Match(String phrase, int flags) {
+            this.phrase = phrase;
+            this.flags = flags;
+        }
+
+        public boolean is(int kind) {
+            return (this.flags & kind) != 0;
+        }
+    }
+
+    //children sit in an open addressing table keyed by lower-case token, probed straight from a
+    //span of the command so a lookup never builds a string
+    private static class Node {
+        private static final VarHandle TOKENS = MethodHandles.arrayElementVarHandle(String[].class);
+        private static final Table EMPTY = new Table(0);
+
+        private final String phrase;
+        private volatile Table table = EMPTY;
+        private volatile int flags;
+        //only read and written by the thread holding the trie's lock
+        private int size;
+
+        Node(String phrase) {
+            this.phrase = phrase;
+        }
+
+        private static int hash(CharSequence text, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + java.lang.Character.toLowerCase(text.charAt(i));
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean sameToken(String token, CharSequence text, int start, int end) {
+            if (token.length() != end - start) return false;
+            for (int i = 0; i < token.length(); i++) {
+                if (token.charAt(i) != java.lang.Character.toLowerCase(text.charAt(start + i))) return false;
+            }
+            return true;
+        }
+
+        Node child(CharSequence text, int start, int end) {
+            Table current = this.table;
+            if (current.tokens.length == 0) return null;
+            int hash = hash(text, start, end);
+            int mask = current.tokens.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                //the acquire pairs with the release in insert, so a token seen here has its hash and child
+                String token = (String) TOKENS.getAcquire(current.tokens, slot);
+                if (token == null) return null;
+                if (current.hashes[slot] == hash && sameToken(token, text, start, end)) {
+                    return current.children[slot];
+                }
+            }
+        }
+
+        Node childOrCreate(String token) {
+            Node child = this.child(token, 0, token.length());
+            if (child == null) {
+                Table current = this.table;
+                if ((this.size + 1) * 2 > current.tokens.length) {
+                    current = current.grown();
+                    this.table = current;
+                }
+                child = new Node(this.phrase.isEmpty() ? token : this.phrase + " " + token);
+                current.insert(token, hash(token, 0, token.length()), child);
+                this.size++;
+            }
+            return child;
+        }
+
+        private static class Table {
+            private final String[] tokens;
+            private final int[] hashes;
+            private final Node[] children;
+
+            Table(int capacity) {
+                this.tokens = new String[capacity];
+                this.hashes = new int[capacity];
+                this.children = new Node[capacity];
+            }
+
+            //the token goes in last, a reader that finds it also finds the hash and child beside it
+            void insert(String token, int hash, Node child) {
+                int mask = this.tokens.length - 1;
+                int slot = hash & mask;
+                while (this.tokens[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                this.hashes[slot] = hash;
+                this.children[slot] = child;
+                TOKENS.setRelease(this.tokens, slot, token);
+            }
+
+            //filled before it is published, so readers of the old table are never disturbed
+            Table grown() {
+                Table grown = new Table(Math.max(4, this.tokens.length * 2));
+                for (int i = 0; i < this.tokens.length; i++) {
+                    if (this.tokens[i] != null) grown.insert(this.tokens[i], this.hashes[i], this.children[i]);
+                }
+                return grown;
+            }
+        }
+    }
+}
@@ -2,18 +2,37 @@ package edu.uob;
 
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Player {
     private final String name;
-    private String location;
+    //read by other threads when routing this player's commands to a shard
+    private volatile int location;
+    private final SymbolTable symbols;
     private final EntityList inventory;
+    private final HolderIndex holders;
     private int health;
+    //copy-on-write view for readers that take no lock, stale from the first change until publish()
+    private final AtomicReference<Snapshot> snapshot;
+    private volatile boolean stale;
 
     public Player(String name, String location) {
+        this(name, location, null);
+    }
+
+    public Player(String name, String location, Vocabulary vocabulary) {
+        this(name, location, vocabulary, null);
+    }
+
+    public Player(String name, String location, Vocabulary vocabulary, HolderIndex holders) {
         this.name = name;
-        this.location = location;
-        this.inventory = new EntityList();
+        this.symbols = vocabulary == null ? new SymbolTable() : vocabulary.getSymbols();
+        this.location = this.symbols.intern(location);
+        this.inventory = new EntityList(vocabulary);
+        this.holders = holders == null ? new HolderIndex() : holders;
         this.health = 3;
+        this.snapshot = new AtomicReference<>();
+        this.stale = true;
     }
 
     public String getName() { // 新增
@@ -21,15 +40,28 @@ public class Player {
     }
 
     public String getLocation() {
+        return this.symbols.name(this.location);
+    }
+
+    public int getLocationId() {
         return this.location;
     }
 
     public void setLocation(String loc) {
-        this.location = loc;
+        this.location = this.symbols.intern(loc);
+        this.stale = true;
+    }
+
+    public void setLocation(int id) {
+        this.location = id;
+        this.stale = true;
     }
 
     public void addToInventory(GameEntity item) {
-        this.inventory.add(item);
+        if (this.inventory.add(item)) {
+            this.holders.add(this.symbols.intern(item.getName()));
+        }
+        this.stale = true;
     }
 
     public String getInventory() {
@@ -49,20 +81,24 @@ public class Player {
     }
 
     public boolean hasItem(String itemName) {
-        return this.inventory.contains(itemName.toLowerCase());
+        return this.inventory.contains(itemName);
+    }
+
+    public boolean hasItem(int id) {
+        return this.inventory.contains(id);
     }
 
     public void removeFromInventory(String itemName) {
-        this.inventory.remove(itemName);
+        int id = this.symbols.id(itemName);
+        if (this.inventory.remove(id)) {
+            this.holders.remove(id);
+        }
+        this.stale = true;
     }
 
     public String getItemDescription(String itemName) {
-        for (GameEntity item : this.inventory.getEntities()) {
-            if (item.getName().equalsIgnoreCase(itemName)) {
-                return item.getDescription();
-            }
-        }
-        return null;
+        GameEntity item = this.inventory.getEntity(itemName);
+        return item == null ? null : item.getDescription();
     }
 
     public int getHealth() {
@@ -73,16 +109,21 @@ public class Player {
         if (this.health < 3) {
             this.health++;
         }
+        this.stale = true;
     }
 
-    public void decreaseHealth(Location currentLocation, String startLocation) {
+    //returns true when this was the last point of health, the items are already dropped and the
+    //caller moves the player back to the start
+    public boolean decreaseHealth(Location currentLocation) {
+        this.stale = true;
         if (this.health > 0) {
             this.health--;
             if (this.health == 0) {
                 this.dropAllItems(currentLocation);
-                this.location = startLocation;
+                return true;
             }
         }
+        return false;
     }
 
     private void dropAllItems(Location currentLocation) {
@@ -91,12 +132,50 @@ public class Player {
         while (iterator.hasNext()) {
             GameEntity item = iterator.next();
             currentLocation.addArtefact(item);
-            iterator.remove();
+            this.holders.remove(this.symbols.id(item.getName()));
         }
+        this.inventory.clear();
+    }
+
+    public void setHealth(int health) {
+        this.health = health;
+        this.stale = true;
     }
 
     public void resetHealth() {
         this.health = 3;
+        this.stale = true;
+    }
+
+    //called by the writer that changed this player once its command is applied, sequence is the last
+    //journal record appended, which covers every change the snapshot shows
+    public Snapshot publish(long sequence) {
+        Snapshot current = this.snapshot.get();
+        if (this.stale || current == null) {
+            current = new Snapshot(this.location, this.getInventory(), this.health, sequence);
+            this.snapshot.set(current);
+            this.stale = false;
+        }
+        return current;
+    }
+
+    //null while a change is waiting to be published, the reader then has to go through a writer
+    public Snapshot getSnapshot() {
+        return this.stale ? null : this.snapshot.get();
+    }
+
+    public static final class Snapshot {
+        public final int location;
+        public final String inventory;
+        public final int health;
+        public final long sequence;
+
+        Snapshot(int location, String inventory, int health, long sequence) {
+            this.location = location;
+            this.inventory = inventory;
+            this.health = health;
+            this.sequence = sequence;
+        }
     }
 
     public LinkedList<GameEntity> getInventoryEntities() {
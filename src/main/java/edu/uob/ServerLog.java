@@ -0,0 +1,229 @@
+package edu.uob;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+//asynchronous server log: a thread that logs only claims a slot in a preallocated ring and copies a few
+//references into it, one background thread formats the entries and writes them out in batches, so no
+//request thread ever waits on the console or builds a log line
+//when the ring is full an entry is dropped and counted rather than making the caller wait, and command
+//entries, logged at debug, can be sampled so only one in every n is kept, warnings and errors are always kept
+//the background thread sleeps while the ring is empty and the entry that ends that wakes it, it is started
+//when the server starts listening and close(), also run on shutdown, writes out what is left
+public class ServerLog implements Closeable {
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private static final int MAX_OUTCOME = 80;
+    private static volatile ServerLog shared = new ServerLog(System.out, 8192, Level.INFO, 1);
+
+    private final PrintStream out;
+    private final Entry[] ring;
+    private final int mask;
+    private final Level level;
+    private final int sampleEvery;
+    private final AtomicLong claimed;
+    private final LongAdder dropped;
+    private final Thread drainer;
+    private final Thread shutdownHook;
+    //entries before this sequence have been written out and their slots can be claimed again
+    private volatile long drained;
+    private volatile boolean running;
+    //the thread writing entries out, set while it is parked waiting for the next one
+    private volatile Thread sleeping;
+    private boolean started;
+
+    //capacity is rounded up to a power of two
+    public ServerLog(PrintStream out, int capacity, Level level, int sampleEvery) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.out = out;
+        this.ring = new Entry[size];
+        for (int i = 0; i < size; i++) {
+            this.ring[i] = new Entry();
+        }
+        this.mask = size - 1;
+        this.level = level;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.claimed = new AtomicLong();
+        this.dropped = new LongAdder();
+        this.drainer = new Thread(this::drain, "stag-log");
+        this.drainer.setDaemon(true);
+        this.shutdownHook = new Thread(this::close, "stag-log-shutdown");
+    }
+
+    //the log the server writes to, replaced by configure()
+    public static ServerLog get() {
+        return shared;
+    }
+
+    //the new log starts with the server, like the default one
+    public static void configure(Level level, int sampleEvery) {
+        ServerLog previous = shared;
+        shared = new ServerLog(System.out, previous.ring.length, level, sampleEvery);
+        previous.close();
+    }
+
+    //starts writing entries out in the background, and makes sure they are all written on shutdown
+    public synchronized void start() {
+        if (this.started) return;
+        this.started = true;
+        this.running = true;
+        this.drainer.start();
+        Runtime.getRuntime().addShutdownHook(this.shutdownHook);
+    }
+
+    public void debug(String message) {
+        this.log(Level.DEBUG, message, null, null, 0);
+    }
+
+    public void info(String message) {
+        this.log(Level.INFO, message, null, null, 0);
+    }
+
+    public void warn(String message, String detail) {
+        this.log(Level.WARN, message, null, detail, 0);
+    }
+
+    //one applied command: the player is read from its prefix and the outcome from the reply's first
+    //line when the entry is written, not here
+    public void command(String command, String reply, long latencyNanos) {
+        if (!this.isEnabled(Level.DEBUG)) return;
+        if (this.sampleEvery > 1 && ThreadLocalRandom.current().nextInt(this.sampleEvery) != 0) return;
+        this.log(Level.DEBUG, null, command, reply, latencyNanos);
+    }
+
+    public boolean isEnabled(Level at) {
+        return at.compareTo(this.level) >= 0;
+    }
+
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    private void log(Level at, String message, String command, String detail, long latencyNanos) {
+        if (!this.isEnabled(at)) return;
+        long sequence;
+        do {
+            sequence = this.claimed.get();
+            if (sequence - this.drained >= this.ring.length) {
+                this.dropped.increment();
+                return;
+            }
+        } while (!this.claimed.compareAndSet(sequence, sequence + 1));
+        Entry entry = this.ring[(int) sequence & this.mask];
+        entry.time = System.currentTimeMillis();
+        entry.level = at;
+        entry.message = message;
+        entry.command = command;
+        entry.detail = detail;
+        entry.latencyNanos = latencyNanos;
+        //the drainer reads the fields only once it sees the slot published for this sequence
+        entry.published = sequence;
+        Thread waiting = this.sleeping;
+        if (waiting != null) LockSupport.unpark(waiting);
+    }
+
+    private void drain() {
+        StringBuilder batch = new StringBuilder();
+        long next = 0;
+        long reportedDrops = 0;
+        while (true) {
+            Entry entry = this.ring[(int) next & this.mask];
+            if (entry.published != next) {
+                if (batch.length() > 0) {
+                    this.out.print(batch);
+                    this.out.flush();
+                    batch.setLength(0);
+                }
+                long drops = this.dropped.sum();
+                if (drops != reportedDrops) {
+                    this.out.println(Instant.now() + " WARN log entries dropped count=" + (drops - reportedDrops));
+                    reportedDrops = drops;
+                }
+                //everything claimed before close() has been published and written
+                if (!this.running && this.claimed.get() == next) return;
+                //announced before the slot is checked again, so an entry published in between either is
+                //seen here or unparks this thread
+                this.sleeping = Thread.currentThread();
+                if (entry.published != next && (this.running || this.claimed.get() != next)) LockSupport.park(this);
+                this.sleeping = null;
+                continue;
+            }
+            format(entry, batch);
+            entry.message = null;
+            entry.command = null;
+            entry.detail = null;
+            next++;
+            this.drained = next;
+        }
+    }
+
+    private static void format(Entry entry, StringBuilder line) {
+        line.append(Instant.ofEpochMilli(entry.time)).append(' ').append(entry.level);
+        if (entry.command == null) {
+            line.append(' ').append(entry.message);
+            if (entry.detail != null) line.append(" detail=\"").append(entry.detail).append('"');
+        } else {
+            int separator = entry.command.indexOf(':');
+            String player = separator > 0 ? entry.command.substring(0, separator).trim() : "";
+            line.append(" command player=").append(player);
+            line.append(" command=\"").append(entry.command).append('"');
+            line.append(" latency_us=").append(entry.latencyNanos / 1000);
+            line.append(" outcome=\"").append(outcomeOf(entry.detail)).append('"');
+        }
+        line.append('\n');
+    }
+
+    private static String outcomeOf(String reply) {
+        if (reply == null) return "";
+        int end = reply.indexOf('\n');
+        if (end < 0) end = reply.length();
+        return reply.substring(0, Math.min(end, MAX_OUTCOME));
+    }
+
+    //writes out everything logged so far, on the calling thread when the log was never started, then
+    //stops the background thread
+    @Override
+    public void close() {
+        boolean wasStarted;
+        synchronized (this) {
+            if (!this.running && this.started) return;
+            wasStarted = this.started;
+            this.started = true;
+            this.running = false;
+        }
+        if (!wasStarted) {
+            this.drain();
+            return;
+        }
+        LockSupport.unpark(this.drainer);
+        if (Thread.currentThread() != this.shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+            } catch (IllegalStateException e) {
+                //already shutting down, the hook is running or about to
+            }
+        }
+        try {
+            this.drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Entry {
+        private volatile long published = -1;
+        private long time;
+        private Level level;
+        private String message;
+        private String command;
+        private String detail;
+        private long latencyNanos;
+    }
+}
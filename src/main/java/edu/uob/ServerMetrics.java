@@ -0,0 +1,101 @@
+package edu.uob;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+//counters and latency histograms recorded on the command path, and gauges read only when the metrics
+//are rendered. Recording never locks: counters are LongAdders and histograms use atomic buckets
+public class ServerMetrics {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] QUANTILES = {"0.5", "0.9", "0.99", "0.999"};
+
+    //the parts of a command's life that are timed separately
+    public enum Stage {
+        PARSE("parse"),
+        BUILD("build"),
+        MATCH("match"),
+        EXECUTE("execute"),
+        SOCKET_READ("socket_read"),
+        SOCKET_WRITE("socket_write");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private final ConcurrentHashMap<String, LongAdder> commands;
+    private final EnumMap<Stage, LatencyHistogram> stages;
+    private final LatencyHistogram total;
+    private final Map<String, LongSupplier> gauges;
+
+    public ServerMetrics() {
+        this.commands = new ConcurrentHashMap<>();
+        this.stages = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            this.stages.put(stage, new LatencyHistogram());
+        }
+        this.total = new LatencyHistogram();
+        this.gauges = new ConcurrentHashMap<>();
+    }
+
+    //type is a built-in command, "action" for custom actions or "invalid", so the set of keys stays small
+    public void countCommand(String type, long nanos) {
+        LongAdder counter = this.commands.get(type);
+        if (counter == null) counter = this.commands.computeIfAbsent(type, key -> new LongAdder());
+        counter.increment();
+        this.total.record(nanos);
+    }
+
+    public void record(Stage stage, long nanos) {
+        this.stages.get(stage).record(nanos);
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return this.stages.get(stage);
+    }
+
+    public long getCommandCount(String type) {
+        LongAdder counter = this.commands.get(type);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    //read when the metrics are rendered, never on the command path
+    public void addGauge(String name, LongSupplier value) {
+        this.gauges.put(name, value);
+    }
+
+    //one "name{labels} value" line per sample, latencies in nanoseconds
+    public String render() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(this.commands).entrySet()) {
+            out.append("stag_commands_total{type=\"").append(entry.getKey()).append("\"} ")
+                    .append(entry.getValue().sum()).append('\n');
+        }
+        appendHistogram(out, "stag_command_latency_nanos", "", this.total);
+        for (Stage stage : Stage.values()) {
+            appendHistogram(out, "stag_stage_latency_nanos", "stage=\"" + stage.label + "\"", this.stages.get(stage));
+        }
+        for (Map.Entry<String, LongSupplier> gauge : new TreeMap<>(this.gauges).entrySet()) {
+            out.append(gauge.getKey()).append(' ').append(gauge.getValue().getAsLong()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void appendHistogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        String separator = labels.isEmpty() ? "" : ",";
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            out.append(name).append("{").append(labels).append(separator).append("quantile=\"")
+                    .append(QUANTILES[i]).append("\"} ").append(histogram.getPercentile(PERCENTILES[i])).append('\n');
+        }
+        String plain = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_max").append(plain).append(' ').append(histogram.getMax()).append('\n');
+        out.append(name).append("_count").append(plain).append(' ').append(histogram.getCount()).append('\n');
+        out.append(name).append("_sum").append(plain).append(' ').append(histogram.getSum()).append('\n');
+    }
+}
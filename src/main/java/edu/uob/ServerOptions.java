@@ -0,0 +1,189 @@
+package edu.uob;
+
+import java.util.Locale;
+
+public class ServerOptions {
+    private int port;
+    private boolean concurrent;
+    private int poolSize;
+    private boolean persistent;
+    private boolean nonBlocking;
+    private int selectorThreads;
+    private String worldImage;
+    private boolean singleWriter;
+    private int queueCapacity;
+    private int shards;
+    private String journal;
+    private String checkpoint;
+    private int checkpointInterval;
+    private boolean reload;
+    private int metricsPort;
+    private ServerLog.Level logLevel;
+    private int logSample;
+
+    public ServerOptions() {
+        this.port = 8888;
+        this.concurrent = false;
+        this.poolSize = Runtime.getRuntime().availableProcessors() * 4;
+        this.persistent = false;
+        this.nonBlocking = false;
+        this.selectorThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.worldImage = null;
+        this.singleWriter = false;
+        this.queueCapacity = 4096;
+        this.shards = 0;
+        this.journal = null;
+        this.checkpoint = null;
+        this.checkpointInterval = 60;
+        this.reload = false;
+        this.metricsPort = -1;
+        this.logLevel = ServerLog.Level.INFO;
+        this.logSample = 1;
+    }
+
+    public static ServerOptions parse(String[] args) {
+        ServerOptions options = new ServerOptions();
+        for (String arg : args) {
+            if (arg.equals("--concurrent")) {
+                options.concurrent = true;
+            } else if (arg.equals("--persistent")) {
+                //a session holds its connection, so it needs a worker of its own
+                options.persistent = true;
+                options.concurrent = true;
+            } else if (arg.equals("--nio")) {
+                options.nonBlocking = true;
+            } else if (arg.startsWith("--selectors=")) {
+                options.nonBlocking = true;
+                options.selectorThreads = parseNumber(arg, "--selectors=");
+            } else if (arg.equals("--single-writer")) {
+                options.singleWriter = true;
+            } else if (arg.startsWith("--queue=")) {
+                options.singleWriter = true;
+                options.queueCapacity = parseNumber(arg, "--queue=");
+            } else if (arg.startsWith("--shards=")) {
+                options.shards = parseNumber(arg, "--shards=");
+            } else if (arg.startsWith("--journal=")) {
+                options.journal = arg.substring("--journal=".length());
+            } else if (arg.startsWith("--checkpoint=")) {
+                options.checkpoint = arg.substring("--checkpoint=".length());
+            } else if (arg.startsWith("--checkpoint-interval=")) {
+                options.checkpointInterval = parseNumber(arg, "--checkpoint-interval=");
+            } else if (arg.equals("--reload")) {
+                options.reload = true;
+            } else if (arg.startsWith("--metrics-port=")) {
+                options.metricsPort = parseNumber(arg, "--metrics-port=");
+            } else if (arg.startsWith("--log-level=")) {
+                options.logLevel = parseLevel(arg.substring("--log-level=".length()));
+            } else if (arg.startsWith("--log-sample=")) {
+                options.logSample = parseNumber(arg, "--log-sample=");
+            } else if (arg.startsWith("--image=")) {
+                options.worldImage = arg.substring("--image=".length());
+            } else if (arg.startsWith("--port=")) {
+                options.port = parseNumber(arg, "--port=");
+            } else if (arg.startsWith("--threads=")) {
+                options.concurrent = true;
+                options.poolSize = parseNumber(arg, "--threads=");
+            } else {
+                throw new IllegalArgumentException(String.format("Unknown server option: %s", arg));
+            }
+        }
+        //regions change the shared storeroom in an order the journal cannot record
+        if (options.journal != null && options.shards > 0) {
+            throw new IllegalArgumentException("--journal cannot be used with --shards");
+        }
+        //a reload is checkpointed, so the journal never replays older commands against the new files
+        if (options.reload && options.journal != null && options.checkpoint == null) {
+            throw new IllegalArgumentException("--reload with --journal needs --checkpoint");
+        }
+        return options;
+    }
+
+    private static int parseNumber(String arg, String prefix) {
+        try {
+            return Integer.parseInt(arg.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid value for %s", arg), e);
+        }
+    }
+
+    private static ServerLog.Level parseLevel(String level) {
+        try {
+            return ServerLog.Level.valueOf(level.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Invalid log level: %s", level), e);
+        }
+    }
+
+    public int getPort() {
+        return this.port;
+    }
+
+    public boolean isConcurrent() {
+        return this.concurrent;
+    }
+
+    public int getPoolSize() {
+        return this.poolSize;
+    }
+
+    public boolean isPersistent() {
+        return this.persistent;
+    }
+
+    public boolean isNonBlocking() {
+        return this.nonBlocking;
+    }
+
+    public int getSelectorThreads() {
+        return this.selectorThreads;
+    }
+
+    public String getWorldImage() {
+        return this.worldImage;
+    }
+
+    public boolean isSingleWriter() {
+        return this.singleWriter;
+    }
+
+    public int getQueueCapacity() {
+        return this.queueCapacity;
+    }
+
+    //regions the world is split into, 0 when commands are not sharded
+    public int getShards() {
+        return this.shards;
+    }
+
+    public String getJournal() {
+        return this.journal;
+    }
+
+    public String getCheckpoint() {
+        return this.checkpoint;
+    }
+
+    //whether changes to the configuration files are applied while the server runs
+    public boolean isReload() {
+        return this.reload;
+    }
+
+    //loopback port of the metrics endpoint, -1 when it is not served
+    public int getMetricsPort() {
+        return this.metricsPort;
+    }
+
+    public ServerLog.Level getLogLevel() {
+        return this.logLevel;
+    }
+
+    //one in this many commands is logged
+    public int getLogSample() {
+        return this.logSample;
+    }
+
+    //seconds between background checkpoints
+    public int getCheckpointInterval() {
+        return this.checkpointInterval;
+    }
+}
@@ -0,0 +1,60 @@
+package edu.uob;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+//dense int ids for every entity, location and player name, names are case-folded so ids compare
+//the way the protocol does, the first spelling seen is kept for output
+//lookups are lock-free, interning a new name takes the table's lock
+public class SymbolTable {
+    public static final int NONE = -1;
+
+    private final ConcurrentHashMap<String, Integer> ids;
+    private volatile String[] names;
+    private int size;
+
+    public SymbolTable() {
+        this.ids = new ConcurrentHashMap<>();
+        this.names = new String[16];
+        this.size = 0;
+    }
+
+    private static String keyOf(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    public int intern(String name) {
+        String key = keyOf(name);
+        Integer id = this.ids.get(key);
+        if (id != null) return id;
+        synchronized (this) {
+            id = this.ids.get(key);
+            if (id == null) {
+                id = this.size;
+                String[] current = this.names;
+                if (id == current.length) current = Arrays.copyOf(current, id * 2);
+                current[id] = name;
+                this.names = current;
+                this.size++;
+                //published only after the name is in place, so any thread seeing the id can resolve it
+                this.ids.put(key, id);
+            }
+            return id;
+        }
+    }
+
+    //NONE for a name that has never been interned, it cannot refer to anything in the world
+    public int id(String name) {
+        Integer id = this.ids.get(keyOf(name));
+        return id == null ? NONE : id;
+    }
+
+    public String name(int id) {
+        return this.names[id];
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,92 @@
+package edu.uob;
+
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+//incrementally maintained index of every word a command can refer to
+//safe to share between threads: marks and unmarks of a phrase are serialised by the trie, and a scan
+//reads it without taking any lock
+public class Vocabulary {
+    private final PhraseTrie phrases;
+    private final ConcurrentHashMap<String, Integer> entityNames;
+    //every entity placed in a location or inventory, kept as they are added and removed
+    private final LongAdder entityCount;
+    private final SymbolTable symbols;
+
+    public Vocabulary() {
+        this.phrases = new PhraseTrie();
+        this.entityNames = new ConcurrentHashMap<>();
+        this.entityCount = new LongAdder();
+        this.symbols = new SymbolTable();
+        //health can be consumed and produced like an entity but is never placed anywhere
+        this.entityNames.put("health", 1);
+        this.mark("health", PhraseTrie.ENTITY);
+    }
+
+    public SymbolTable getSymbols() {
+        return this.symbols;
+    }
+
+    public void addTrigger(String trigger) {
+        this.mark(trigger, PhraseTrie.TRIGGER);
+    }
+
+    public void removeTrigger(String trigger) {
+        this.unmark(trigger, PhraseTrie.TRIGGER);
+    }
+
+    //entity names are reference counted, the same name can live in several places
+    //the trie is updated inside compute so a count and its mark never disagree
+    public void addEntityName(String name) {
+        this.entityCount.increment();
+        String key = PhraseTrie.canonical(name);
+        this.entityNames.compute(key, (k, count) -> {
+            if (count == null) {
+                this.mark(k, PhraseTrie.ENTITY);
+                return 1;
+            }
+            return count + 1;
+        });
+    }
+
+    public void removeEntityName(String name) {
+        String key = PhraseTrie.canonical(name);
+        this.entityNames.computeIfPresent(key, (k, count) -> {
+            this.entityCount.decrement();
+            if (count <= 1) {
+                this.unmark(k, PhraseTrie.ENTITY);
+                return null;
+            }
+            return count - 1;
+        });
+    }
+
+    public long getEntityCount() {
+        return this.entityCount.sum();
+    }
+
+    public void addLocationName(String name) {
+        this.mark(name, PhraseTrie.LOCATION);
+    }
+
+    public void addPlayerName(String name) {
+        this.mark(name, PhraseTrie.PLAYER);
+    }
+
+    private void mark(String phrase, int kind) {
+        this.phrases.mark(phrase, kind);
+    }
+
+    private void unmark(String phrase, int kind) {
+        this.phrases.unmark(phrase, kind);
+    }
+
+    public LinkedList<PhraseTrie.Match> scan(LinkedList<String> words) {
+        return this.phrases.scan(words.toArray(new String[0]));
+    }
+
+    public LinkedList<PhraseTrie.Match> scan(CommandTokenizer tokens) {
+        return this.phrases.scan(tokens);
+    }
+}
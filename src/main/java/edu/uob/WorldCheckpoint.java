@@ -0,0 +1,218 @@
+package edu.uob;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.zip.CRC32;
+
+//everything commands can change, tagged with the journal sequence it is current to: each location's
+//description, entities and paths, the storeroom, and every player's location, health and inventory
+//layout: header (magic, version, sequence, payload length, payload checksum) then the payload of
+//string table, locations, and players, entities use the world image's encoding
+public class WorldCheckpoint {
+    private static final int MAGIC = 0x5354434B;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 8;
+
+    private final long sequence;
+    private final ArrayList<LocationState> locations;
+    private final ArrayList<PlayerState> players;
+
+    private WorldCheckpoint(long sequence) {
+        this.sequence = sequence;
+        this.locations = new ArrayList<>();
+        this.players = new ArrayList<>();
+    }
+
+    //must run while no writer is applying a command, it only copies references to entities, which never
+    //change once loaded, so the slow part of a checkpoint happens in write() after writers resume
+    public static WorldCheckpoint capture(GameState gameState, long sequence) {
+        WorldCheckpoint checkpoint = new WorldCheckpoint(sequence);
+        HashSet<Player> placed = new HashSet<>();
+        for (Location location : gameState.getLocations().values()) {
+            checkpoint.locations.add(new LocationState(location, false));
+            //players are kept in the order they arrived, so "other players" lists come back the same
+            for (Player player : location.getPlayers()) {
+                if (placed.add(player)) checkpoint.players.add(new PlayerState(player));
+            }
+        }
+        if (gameState.getStoreroom() != gameState.getLocation("storeroom")) {
+            checkpoint.locations.add(new LocationState(gameState.getStoreroom(), true));
+        }
+        //a player handed between shards is between locations for a moment
+        for (Player player : gameState.getPlayers().values()) {
+            if (placed.add(player)) checkpoint.players.add(new PlayerState(player));
+        }
+        return checkpoint;
+    }
+
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    //written beside the target and moved over it, so a crash never leaves half a checkpoint behind
+    public void write(File file) throws IOException {
+        WorldImage.StringTable strings = new WorldImage.StringTable();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeInt(this.locations.size());
+        for (LocationState location : this.locations) {
+            location.write(out, strings);
+        }
+        out.writeInt(this.players.size());
+        for (PlayerState player : this.players) {
+            player.write(out, strings);
+        }
+        out.flush();
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream payloadOut = new DataOutputStream(payload);
+        strings.write(payloadOut);
+        body.writeTo(payloadOut);
+        payloadOut.flush();
+        byte[] payloadBytes = payload.toByteArray();
+        CRC32 payloadChecksum = new CRC32();
+        payloadChecksum.update(payloadBytes);
+
+        Path temporary = Files.createTempFile(file.getAbsoluteFile().getParentFile().toPath(), "checkpoint", ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(this.sequence);
+            header.putInt(payloadBytes.length).putLong(payloadChecksum.getValue());
+            header.flip();
+            ByteBuffer contents = ByteBuffer.wrap(payloadBytes);
+            while (header.hasRemaining() || contents.hasRemaining()) {
+                channel.write(new ByteBuffer[] {header, contents});
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    //puts the world as loaded from its sources back the way the checkpoint found it, returns the journal
+    //sequence to replay from, 0 when there is no usable checkpoint and the whole journal applies
+    public static long restore(File file, GameState gameState) throws IOException {
+        if (!file.isFile()) return 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) return 0;
+            MappedByteBuffer image = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (image.getInt() != MAGIC || image.getInt() != VERSION) return 0;
+            long sequence = image.getLong();
+            int payloadLength = image.getInt();
+            long payloadChecksum = image.getLong();
+            if (payloadLength != channel.size() - HEADER_SIZE) return 0;
+            CRC32 checksum = new CRC32();
+            checksum.update(image.slice());
+            if (checksum.getValue() != payloadChecksum) return 0;
+            String[] strings = WorldImage.readStrings(image);
+            int locationCount = image.getInt();
+            for (int i = 0; i < locationCount; i++) {
+                LocationState.restore(image, strings, gameState);
+            }
+            int playerCount = image.getInt();
+            for (int i = 0; i < playerCount; i++) {
+                PlayerState.restore(image, strings, gameState);
+            }
+            return sequence;
+        }
+    }
+
+    private static class LocationState {
+        private final String name;
+        private final boolean storeroom;
+        private final String description;
+        private final LinkedList<GameEntity> artefacts;
+        private final LinkedList<GameEntity> furniture;
+        private final LinkedList<GameEntity> characters;
+        private final LinkedList<String> paths;
+
+        LocationState(Location location, boolean storeroom) {
+            this.name = location.getName();
+            this.storeroom = storeroom;
+            this.description = location.getDescription();
+            this.artefacts = location.getEntities("artefacts");
+            this.furniture = location.getEntities("furniture");
+            this.characters = location.getEntities("characters");
+            this.paths = location.getPathNames();
+        }
+
+        void write(DataOutputStream out, WorldImage.StringTable strings) throws IOException {
+            out.writeInt(strings.id(this.name));
+            out.writeBoolean(this.storeroom);
+            out.writeInt(strings.id(this.description));
+            out.writeInt(this.artefacts.size() + this.furniture.size() + this.characters.size());
+            WorldImage.writeEntities(out, this.artefacts, WorldImage.ARTEFACT, strings);
+            WorldImage.writeEntities(out, this.furniture, WorldImage.FURNITURE, strings);
+            WorldImage.writeEntities(out, this.characters, WorldImage.CHARACTER, strings);
+            out.writeInt(this.paths.size());
+            for (String path : this.paths) {
+                out.writeInt(strings.id(path));
+            }
+        }
+
+        static void restore(ByteBuffer image, String[] strings, GameState gameState) {
+            String name = strings[image.getInt()];
+            boolean storeroom = image.get() != 0;
+            String description = strings[image.getInt()];
+            Location location = storeroom ? gameState.getStoreroom() : gameState.getLocation(name);
+            if (location == null) {
+                gameState.addLocation(name, description);
+                location = gameState.getLocation(name);
+            }
+            location.clearEntities();
+            location.setDescription(description);
+            WorldImage.readEntities(image, strings, location);
+            location.clearPaths();
+            int pathCount = image.getInt();
+            for (int p = 0; p < pathCount; p++) {
+                location.addPath(strings[image.getInt()]);
+            }
+            location.publish(gameState.getJournalSequence());
+        }
+    }
+
+    private static class PlayerState {
+        private final String name;
+        private final String location;
+        private final int health;
+        private final LinkedList<GameEntity> inventory;
+
+        PlayerState(Player player) {
+            this.name = player.getName();
+            this.location = player.getLocation();
+            this.health = player.getHealth();
+            this.inventory = player.getInventoryEntities();
+        }
+
+        void write(DataOutputStream out, WorldImage.StringTable strings) throws IOException {
+            out.writeInt(strings.id(this.name));
+            out.writeInt(strings.id(this.location));
+            out.writeInt(this.health);
+            out.writeInt(this.inventory.size());
+            WorldImage.writeEntities(out, this.inventory, WorldImage.ARTEFACT, strings);
+        }
+
+        static void restore(ByteBuffer image, String[] strings, GameState gameState) {
+            String name = strings[image.getInt()];
+            String location = strings[image.getInt()];
+            int health = image.getInt();
+            LinkedList<GameEntity> inventory = new LinkedList<>();
+            int itemCount = image.getInt();
+            for (int i = 0; i < itemCount; i++) {
+                inventory.add(WorldImage.readEntity(image, strings));
+            }
+            gameState.restorePlayer(name, location, health, inventory);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package edu.uob;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Random;
+
+//writes synthetic entities (DOT) and actions (XML) files, the same seed always gives the same world
+public class WorldGenerator {
+    private static final String[] COMMON_TRIGGERS = {"use", "open", "push", "pull", "cut down", "look under", "climb", "shake"};
+
+    private final int locations;
+    private final int entitiesPerLocation;
+    private final double pathDensity;
+    private final int actions;
+    private final double triggerOverlap;
+    private final long seed;
+
+    //pathDensity is the average number of extra outgoing paths per location on top of a connecting ring,
+    //triggerOverlap is the share of actions whose triggers come from a small pool of common keyphrases
+    public WorldGenerator(int locations, int entitiesPerLocation, double pathDensity, int actions, double triggerOverlap, long seed) {
+        if (locations < 1) throw new IllegalArgumentException("A world needs at least one location");
+        this.locations = locations;
+        this.entitiesPerLocation = entitiesPerLocation;
+        this.pathDensity = pathDensity;
+        this.actions = actions;
+        this.triggerOverlap = triggerOverlap;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int locations = 100;
+        int entities = 5;
+        double density = 1.0;
+        int actions = 200;
+        double overlap = 0.3;
+        long seed = 42;
+        File directory = new File("generated");
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--locations=")) locations = Integer.parseInt(value);
+            else if (arg.startsWith("--entities=")) entities = Integer.parseInt(value);
+            else if (arg.startsWith("--density=")) density = Double.parseDouble(value);
+            else if (arg.startsWith("--actions=")) actions = Integer.parseInt(value);
+            else if (arg.startsWith("--overlap=")) overlap = Double.parseDouble(value);
+            else if (arg.startsWith("--seed=")) seed = Long.parseLong(value);
+            else if (arg.startsWith("--out=")) directory = new File(value);
+            else throw new IllegalArgumentException(String.format("Unknown generator option: %s", arg));
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(String.format("Cannot create output directory %s", directory));
+        }
+        WorldGenerator generator = new WorldGenerator(locations, entities, density, actions, overlap, seed);
+        generator.write(new File(directory, "entities.dot"), new File(directory, "actions.xml"));
+    }
+
+    public static String locationName(int location) {
+        return "location" + location;
+    }
+
+    //every location holds its entities in the same artefact, furniture, character rotation
+    public static String entityName(int location, int index) {
+        switch (index % 3) {
+            case 0: return "artefact" + location + "x" + index;
+            case 1: return "furniture" + location + "x" + index;
+            default: return "character" + location + "x" + index;
+        }
+    }
+
+    public static String storeroomName(int index) {
+        return "stored" + index;
+    }
+
+    public void write(File entitiesFile, File actionsFile) throws IOException {
+        Random random = new Random(this.seed);
+        this.writeEntities(entitiesFile, random);
+        this.writeActions(actionsFile, random);
+    }
+
+    private int storeroomSize() {
+        return Math.max(1, this.actions / 10);
+    }
+
+    private void writeEntities(File entitiesFile, Random random) throws IOException {
+        try (PrintWriter out = new PrintWriter(entitiesFile, StandardCharsets.UTF_8)) {
+            out.println("digraph layout {");
+            out.println("    subgraph locations {");
+            for (int location = 0; location < this.locations; location++) {
+                out.printf("        subgraph cluster%d {%n", location);
+                out.printf("            %s [description = \"Generated location %d\"];%n", locationName(location), location);
+                this.writeEntityGroup(out, "artefacts", location, 0);
+                this.writeEntityGroup(out, "furniture", location, 1);
+                this.writeEntityGroup(out, "characters", location, 2);
+                out.println("        }");
+            }
+            out.println("        subgraph storeroom {");
+            out.println("            storeroom [description = \"Storage for any entities not placed in the game\"];");
+            out.println("            subgraph artefacts {");
+            for (int index = 0; index < this.storeroomSize(); index++) {
+                out.printf("                %s [description = \"Stored item %d\"];%n", storeroomName(index), index);
+            }
+            out.println("            }");
+            out.println("        }");
+            out.println("    }");
+            out.println("    subgraph paths {");
+            this.writePaths(out, random);
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    private void writeEntityGroup(PrintWriter out, String type, int location, int rotation) {
+        out.printf("            subgraph %s {%n", type);
+        for (int index = rotation; index < this.entitiesPerLocation; index += 3) {
+            out.printf("                %s [description = \"Generated %s %d of location %d\"];%n",
+                    entityName(location, index), type, index, location);
+        }
+        out.println("            }");
+    }
+
+    private void writePaths(PrintWriter out, Random random) {
+        HashSet<Long> written = new HashSet<>();
+        if (this.locations > 1) {
+            for (int location = 0; location < this.locations; location++) {
+                int next = (location + 1) % this.locations;
+                this.writePath(out, written, location, next);
+                this.writePath(out, written, next, location);
+            }
+        }
+        long extraPaths = Math.round(this.pathDensity * this.locations);
+        for (long path = 0; path < extraPaths; path++) {
+            int from = random.nextInt(this.locations);
+            int to = random.nextInt(this.locations);
+            if (from != to) this.writePath(out, written, from, to);
+        }
+    }
+
+    private void writePath(PrintWriter out, HashSet<Long> written, int from, int to) {
+        if (written.add(((long) from << 32) | to)) {
+            out.printf("        %s -> %s;%n", locationName(from), locationName(to));
+        }
+    }
+
+    private void writeActions(File actionsFile, Random random) throws IOException {
+        try (PrintWriter out = new PrintWriter(actionsFile, StandardCharsets.UTF_8)) {
+            out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            out.println("<actions>");
+            for (int action = 0; action < this.actions; action++) {
+                this.writeAction(out, random, action);
+            }
+            out.println("</actions>");
+        }
+    }
+
+    private void writeAction(PrintWriter out, Random random, int action) {
+        LinkedList<String> triggers = new LinkedList<>();
+        triggers.add("trigger" + action);
+        if (random.nextDouble() < this.triggerOverlap) {
+            triggers.add(COMMON_TRIGGERS[random.nextInt(COMMON_TRIGGERS.length)]);
+        }
+        LinkedList<String> subjects = new LinkedList<>();
+        LinkedList<String> consumed = new LinkedList<>();
+        LinkedList<String> produced = new LinkedList<>();
+        int location = random.nextInt(this.locations);
+        if (this.entitiesPerLocation > 0) {
+            subjects.add(entityName(location, random.nextInt(this.entitiesPerLocation)));
+            if (this.entitiesPerLocation > 1 && random.nextBoolean()) {
+                String second = entityName(location, random.nextInt(this.entitiesPerLocation));
+                if (!subjects.contains(second)) subjects.add(second);
+            }
+            if (random.nextInt(4) == 0) consumed.add(subjects.getLast());
+        } else {
+            subjects.add(locationName(location));
+        }
+        switch (random.nextInt(4)) {
+            case 0: produced.add(storeroomName(random.nextInt(this.storeroomSize()))); break;
+            case 1: produced.add(locationName(random.nextInt(this.locations))); break;
+            case 2: produced.add("health"); break;
+            default: break;
+        }
+        out.println("    <action>");
+        this.writeElements(out, "triggers", "keyphrase", triggers);
+        this.writeElements(out, "subjects", "entity", subjects);
+        this.writeElements(out, "consumed", "entity", consumed);
+        this.writeElements(out, "produced", "entity", produced);
+        out.printf("        <narration>Generated action %d happens</narration>%n", action);
+        out.println("    </action>");
+    }
+
+    private void writeElements(PrintWriter out, String tagName, String childTag, LinkedList<String> values) {
+        out.printf("        <%s>%n", tagName);
+        for (String value : values) {
+            out.printf("            <%s>%s</%s>%n", childTag, value, childTag);
+        }
+        out.printf("        </%s>%n", tagName);
+    }
+}
@@ -0,0 +1,309 @@
+package edu.uob;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+//precompiled binary form of an entities and actions pair, so a restart skips the DOT and XML parsers
+//layout: header (magic, version, source checksum, payload length, payload checksum) then the payload of
+//string table, start location, locations with their entities and paths, actions, and the trigger table
+public class WorldImage {
+    private static final int MAGIC = 0x53544147;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 8;
+    static final byte ARTEFACT = 0;
+    static final byte FURNITURE = 1;
+    static final byte CHARACTER = 2;
+
+    //loads the image if it was compiled from the current sources, otherwise compiles it again first
+    public static GameState loadOrCompile(File entitiesFile, File actionsFile, File imageFile) {
+        try {
+            long sourceChecksum = sourceChecksum(entitiesFile, actionsFile);
+            if (imageFile.isFile()) {
+                GameState gameState = load(imageFile, sourceChecksum);
+                if (gameState != null) return gameState;
+            }
+            compile(entitiesFile, actionsFile, imageFile);
+            GameState gameState = load(imageFile, sourceChecksum);
+            if (gameState == null) {
+                throw new IllegalStateException("Freshly compiled world image failed validation");
+            }
+            return gameState;
+        } catch (IOException e) {
+            throw new IllegalStateException(String.format("Error loading world image: %s", e.getMessage()), e);
+        }
+    }
+
+    public static long sourceChecksum(File entitiesFile, File actionsFile) throws IOException {
+        CRC32 checksum = new CRC32();
+        checksum.update(Files.readAllBytes(entitiesFile.toPath()));
+        checksum.update(Files.readAllBytes(actionsFile.toPath()));
+        return checksum.getValue();
+    }
+
+    public static void compile(File entitiesFile, File actionsFile, File imageFile) throws IOException {
+        GameState gameState = new EntityParser().parseWorld(entitiesFile);
+        LinkedList<GameAction> actions = new LinkedList<>();
+        new ActionParser(actions).parseAction(actionsFile);
+
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeInt(strings.id(gameState.getStartLocation()));
+        writeLocations(out, gameState, strings);
+        writeActions(out, actions, strings);
+        out.flush();
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream payloadOut = new DataOutputStream(payload);
+        strings.write(payloadOut);
+        body.writeTo(payloadOut);
+        payloadOut.flush();
+        byte[] payloadBytes = payload.toByteArray();
+        CRC32 payloadChecksum = new CRC32();
+        payloadChecksum.update(payloadBytes);
+
+        Path temporary = Files.createTempFile(imageFile.getAbsoluteFile().getParentFile().toPath(), "world", ".tmp");
+        try (DataOutputStream file = new DataOutputStream(Files.newOutputStream(temporary))) {
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            file.writeLong(sourceChecksum(entitiesFile, actionsFile));
+            file.writeInt(payloadBytes.length);
+            file.writeLong(payloadChecksum.getValue());
+            file.write(payloadBytes);
+        }
+        Files.move(temporary, imageFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeLocations(DataOutputStream out, GameState gameState, StringTable strings) throws IOException {
+        LinkedList<Location> locations = new LinkedList<>();
+        for (Location location : gameState.getLocations().values()) {
+            //the state's own empty storeroom is recreated by the GameState constructor
+            if (location != gameState.getStoreroom()) locations.add(location);
+        }
+        out.writeInt(locations.size());
+        for (Location location : locations) {
+            out.writeInt(strings.id(location.getName()));
+            out.writeInt(strings.id(location.getDescription()));
+            LinkedList<GameEntity> artefacts = location.getEntities("artefacts");
+            LinkedList<GameEntity> furniture = location.getEntities("furniture");
+            LinkedList<GameEntity> characters = location.getEntities("characters");
+            out.writeInt(artefacts.size() + furniture.size() + characters.size());
+            writeEntities(out, artefacts, ARTEFACT, strings);
+            writeEntities(out, furniture, FURNITURE, strings);
+            writeEntities(out, characters, CHARACTER, strings);
+            LinkedList<String> paths = location.getPathNames();
+            out.writeInt(paths.size());
+            for (String path : paths) {
+                out.writeInt(strings.id(path));
+            }
+        }
+    }
+
+    static void writeEntities(DataOutputStream out, LinkedList<GameEntity> entities, byte type, StringTable strings) throws IOException {
+        for (GameEntity entity : entities) {
+            out.writeByte(type);
+            out.writeInt(strings.id(entity.getName()));
+            out.writeInt(strings.id(entity.getDescription()));
+            Map<String, String> attributes = entity.getAttributes();
+            out.writeInt(attributes.size());
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                out.writeInt(strings.id(attribute.getKey()));
+                out.writeInt(strings.id(attribute.getValue()));
+            }
+        }
+    }
+
+    private static void writeActions(DataOutputStream out, LinkedList<GameAction> actions, StringTable strings) throws IOException {
+        LinkedHashMap<Integer, LinkedList<Integer>> actionsByTrigger = new LinkedHashMap<>();
+        out.writeInt(actions.size());
+        int index = 0;
+        for (GameAction action : actions) {
+            writeIds(out, action.getSubjects(), strings);
+            writeIds(out, action.getConsumed(), strings);
+            writeIds(out, action.getProduced(), strings);
+            out.writeInt(strings.id(action.getNarration()));
+            for (String trigger : action.getTriggers()) {
+                actionsByTrigger.computeIfAbsent(strings.id(PhraseTrie.canonical(trigger)), id -> new LinkedList<>()).add(index);
+            }
+            index++;
+        }
+        out.writeInt(actionsByTrigger.size());
+        for (Map.Entry<Integer, LinkedList<Integer>> trigger : actionsByTrigger.entrySet()) {
+            out.writeInt(trigger.getKey());
+            out.writeInt(trigger.getValue().size());
+            for (int actionIndex : trigger.getValue()) {
+                out.writeInt(actionIndex);
+            }
+        }
+    }
+
+    private static void writeIds(DataOutputStream out, List<String> values, StringTable strings) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeInt(strings.id(value));
+        }
+    }
+
+    //returns null when the image is unreadable, corrupt, or compiled from different sources
+    static GameState load(File imageFile, long expectedSourceChecksum) throws IOException {
+        try (FileChannel channel = FileChannel.open(imageFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) return null;
+            MappedByteBuffer image = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (image.getInt() != MAGIC || image.getInt() != VERSION) return null;
+            if (image.getLong() != expectedSourceChecksum) return null;
+            int payloadLength = image.getInt();
+            long payloadChecksum = image.getLong();
+            if (payloadLength != channel.size() - HEADER_SIZE) return null;
+            CRC32 checksum = new CRC32();
+            checksum.update(image.slice());
+            if (checksum.getValue() != payloadChecksum) return null;
+            return read(image);
+        }
+    }
+
+    private static GameState read(ByteBuffer image) {
+        String[] strings = readStrings(image);
+        GameState gameState = new GameState(strings[image.getInt()]);
+        readLocations(image, strings, gameState);
+        gameState.getPaths().compact();
+        readActions(image, strings, gameState);
+        return gameState;
+    }
+
+    private static void readLocations(ByteBuffer image, String[] strings, GameState gameState) {
+        int locationCount = image.getInt();
+        for (int i = 0; i < locationCount; i++) {
+            String name = strings[image.getInt()];
+            gameState.addLocation(name, strings[image.getInt()]);
+            Location location = gameState.getLocation(name);
+            readEntities(image, strings, location);
+            int pathCount = image.getInt();
+            for (int p = 0; p < pathCount; p++) {
+                location.addPath(strings[image.getInt()]);
+            }
+        }
+    }
+
+    static String[] readStrings(ByteBuffer image) {
+        String[] strings = new String[image.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[image.getInt()];
+            image.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    //a count followed by that many entities, each placed by its type
+    static void readEntities(ByteBuffer image, String[] strings, Location location) {
+        int entityCount = image.getInt();
+        for (int e = 0; e < entityCount; e++) {
+            GameEntity entity = readEntity(image, strings);
+            if (entity instanceof Artefact) {
+                location.addArtefact(entity);
+            } else if (entity instanceof Furniture) {
+                location.addFurniture(entity);
+            } else {
+                location.addCharacter(entity);
+            }
+        }
+    }
+
+    static GameEntity readEntity(ByteBuffer image, String[] strings) {
+        byte type = image.get();
+        String entityName = strings[image.getInt()];
+        String description = strings[image.getInt()];
+        GameEntity entity;
+        if (type == ARTEFACT) {
+            entity = new Artefact(entityName, description);
+        } else if (type == FURNITURE) {
+            entity = new Furniture(entityName, description);
+        } else {
+            entity = new Character(entityName, description);
+        }
+        int attributeCount = image.getInt();
+        for (int a = 0; a < attributeCount; a++) {
+            entity.addAttribute(strings[image.getInt()], strings[image.getInt()]);
+        }
+        return entity;
+    }
+
+    private static void readActions(ByteBuffer image, String[] strings, GameState gameState) {
+        int actionCount = image.getInt();
+        ArrayList<LinkedList<String>> subjects = new ArrayList<>(actionCount);
+        ArrayList<LinkedList<String>> consumed = new ArrayList<>(actionCount);
+        ArrayList<LinkedList<String>> produced = new ArrayList<>(actionCount);
+        ArrayList<String> narrations = new ArrayList<>(actionCount);
+        ArrayList<LinkedList<String>> triggers = new ArrayList<>(actionCount);
+        for (int i = 0; i < actionCount; i++) {
+            subjects.add(readIds(image, strings));
+            consumed.add(readIds(image, strings));
+            produced.add(readIds(image, strings));
+            narrations.add(strings[image.getInt()]);
+            triggers.add(new LinkedList<>());
+        }
+        int triggerCount = image.getInt();
+        for (int t = 0; t < triggerCount; t++) {
+            String trigger = strings[image.getInt()];
+            int count = image.getInt();
+            for (int a = 0; a < count; a++) {
+                triggers.get(image.getInt()).add(trigger);
+            }
+        }
+        for (int i = 0; i < actionCount; i++) {
+            gameState.addAction(new GameAction(triggers.get(i), subjects.get(i), consumed.get(i), produced.get(i), narrations.get(i)));
+        }
+    }
+
+    private static LinkedList<String> readIds(ByteBuffer image, String[] strings) {
+        LinkedList<String> values = new LinkedList<>();
+        int count = image.getInt();
+        for (int i = 0; i < count; i++) {
+            values.add(strings[image.getInt()]);
+        }
+        return values;
+    }
+
+    //interns every string once, the image refers to them by index
+    static class StringTable {
+        private final HashMap<String, Integer> ids = new HashMap<>();
+        private final ArrayList<String> values = new ArrayList<>();
+
+        int id(String value) {
+            String key = value == null ? "" : value;
+            Integer id = this.ids.get(key);
+            if (id == null) {
+                id = this.values.size();
+                this.ids.put(key, id);
+                this.values.add(key);
+            }
+            return id;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(this.values.size());
+            for (String value : this.values) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+}
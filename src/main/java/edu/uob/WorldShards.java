@@ -0,0 +1,283 @@
+package edu.uob;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+//splits the map into regions, each owned by one executor thread. A command runs on the thread that
+//owns the location its player stands in, so players in different regions are served in parallel and
+//a location's entities, scene and occupants are only ever touched by its owner.
+//
+//hand-offs between regions:
+// - a command queued before its player moved is forwarded to the region the player is now in
+// - a goto (or a respawn) across a boundary leaves the old location on the old region's thread and
+//   posts the arrival to the new region before the player's location changes, so the player's next
+//   command is always queued behind it
+// - the storeroom is owned by no region, actions move entities in and out of it under its own lock
+//locations a reload adds are placed while the regions are parked: each joins the least loaded region
+//among the locations it has a path to or from
+public class WorldShards implements Closeable {
+    private final GameState gameState;
+    private final CommandProcessor processor;
+    private final Region[] regions;
+    //copied when locations are added, so routing threads always see a complete array, -1 where no location is
+    private volatile int[] regionOf;
+    //locations per region, only changed while the regions are parked
+    private final int[] regionSizes;
+    private final int startLocation;
+
+    public WorldShards(GameState gameState, CommandProcessor processor, int regionCount) {
+        if (regionCount < 1) throw new IllegalArgumentException("A world needs at least one region");
+        this.gameState = gameState;
+        this.processor = processor;
+        this.startLocation = gameState.getSymbols().intern(gameState.getStartLocation());
+        this.regionSizes = new int[regionCount];
+        this.regionOf = this.partition(regionCount);
+        this.regions = new Region[regionCount];
+        for (int i = 0; i < regionCount; i++) {
+            this.regions[i] = new Region(i);
+        }
+    }
+
+    //breadth first from the start location so neighbouring locations tend to share a region, then the
+    //visiting order is cut into equal runs, locations no path reaches are appended in map order
+    private int[] partition(int regionCount) {
+        PathGraph paths = this.gameState.getPaths();
+        int[] regions = new int[this.gameState.getSymbols().size()];
+        Arrays.fill(regions, -1);
+        boolean[] seen = new boolean[regions.length];
+        IntList order = new IntList();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(this.startLocation);
+        seen[this.startLocation] = true;
+        while (!queue.isEmpty()) {
+            int from = queue.poll();
+            order.add(from);
+            for (int to : paths.targets(from)) {
+                if (!seen[to] && this.gameState.getLocation(to) != null) {
+                    seen[to] = true;
+                    queue.add(to);
+                }
+            }
+        }
+        for (Location location : this.gameState.getLocations().values()) {
+            if (!seen[location.getId()]) {
+                seen[location.getId()] = true;
+                order.add(location.getId());
+            }
+        }
+        int perRegion = (order.size() + regionCount - 1) / regionCount;
+        for (int i = 0; i < order.size(); i++) {
+            regions[order.get(i)] = i / Math.max(1, perRegion);
+            this.regionSizes[regions[order.get(i)]]++;
+        }
+        return regions;
+    }
+
+    //runs while the regions are parked, after a change that may have added locations. Passes repeat so
+    //a chain of new locations follows the first of them that touches the existing map, a location no
+    //path connects to a placed one joins the least loaded region
+    private void placeNewLocations() {
+        int[] regions = this.regionOf;
+        IntList unplaced = new IntList();
+        for (Location location : this.gameState.getLocations().values()) {
+            int id = location.getId();
+            if (id >= regions.length || regions[id] < 0) unplaced.add(id);
+        }
+        if (unplaced.isEmpty()) return;
+        int oldLength = regions.length;
+        regions = Arrays.copyOf(regions, Math.max(oldLength, this.gameState.getSymbols().size()));
+        Arrays.fill(regions, oldLength, regions.length, -1);
+        boolean placedAny = true;
+        while (placedAny) {
+            placedAny = false;
+            for (int i = 0; i < unplaced.size(); i++) {
+                int id = unplaced.get(i);
+                if (regions[id] >= 0) continue;
+                int region = this.neighbourRegion(id, regions);
+                if (region >= 0) {
+                    this.place(regions, id, region);
+                    placedAny = true;
+                }
+            }
+        }
+        for (int i = 0; i < unplaced.size(); i++) {
+            int id = unplaced.get(i);
+            if (regions[id] < 0) this.place(regions, id, this.leastLoaded(null));
+        }
+        this.regionOf = regions;
+    }
+
+    //the least loaded region among the placed locations this one has a path to or from, -1 for none
+    private int neighbourRegion(int id, int[] regions) {
+        PathGraph paths = this.gameState.getPaths();
+        boolean[] candidates = new boolean[this.regions.length];
+        boolean any = false;
+        for (int to : paths.targets(id)) {
+            if (to < regions.length && regions[to] >= 0) {
+                candidates[regions[to]] = true;
+                any = true;
+            }
+        }
+        for (Location location : this.gameState.getLocations().values()) {
+            int from = location.getId();
+            if (from < regions.length && regions[from] >= 0 && paths.hasPath(from, id)) {
+                candidates[regions[from]] = true;
+                any = true;
+            }
+        }
+        return any ? this.leastLoaded(candidates) : -1;
+    }
+
+    private int leastLoaded(boolean[] candidates) {
+        int best = -1;
+        for (int region = 0; region < this.regionSizes.length; region++) {
+            if (candidates != null && !candidates[region]) continue;
+            if (best < 0 || this.regionSizes[region] < this.regionSizes[best]) best = region;
+        }
+        return best;
+    }
+
+    private void place(int[] regions, int id, int region) {
+        regions[id] = region;
+        this.regionSizes[region]++;
+    }
+
+    public void start() {
+        this.gameState.setArrivals(this::arrive);
+    }
+
+    public int getRegionCount() {
+        return this.regions.length;
+    }
+
+    public int getRegion(int locationId) {
+        int[] regions = this.regionOf;
+        if (locationId < 0 || locationId >= regions.length) return 0;
+        return Math.max(0, regions[locationId]);
+    }
+
+    public CompletableFuture<String> submit(String command) {
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        String playerName = playerNameOf(command);
+        this.route(playerName).execute(() -> this.run(playerName, command, reply), reply);
+        return reply;
+    }
+
+    //the tokenizer checks the name properly on the owning thread, routing only needs the prefix
+    private static String playerNameOf(String command) {
+        int separator = command.indexOf(": ");
+        return separator > 0 ? command.substring(0, separator) : null;
+    }
+
+    //a player's location only changes on the thread of the region they stand in, so once a command
+    //reaches that thread the player cannot leave until it is done
+    private Region route(String playerName) {
+        Player player = playerName == null ? null : this.gameState.getPlayer(playerName);
+        int location = player == null ? this.startLocation : player.getLocationId();
+        return this.regions[this.getRegion(location)];
+    }
+
+    private void run(String playerName, String command, CompletableFuture<String> reply) {
+        Region owner = this.route(playerName);
+        if (!owner.isCurrent()) {
+            owner.execute(() -> this.run(playerName, command, reply), reply);
+            return;
+        }
+        try {
+            reply.complete(this.processor.processCommand(command));
+        } catch (RuntimeException e) {
+            reply.completeExceptionally(e);
+        }
+    }
+
+    //parks every region between two commands and runs the task on the caller while they wait, a region
+    //that has already shut down has nothing left to run and counts as parked. Locations the task added
+    //are given a region before the others resume
+    public void runPaused(Runnable task) {
+        CountDownLatch parked = new CountDownLatch(this.regions.length);
+        CountDownLatch resume = new CountDownLatch(1);
+        for (Region region : this.regions) {
+            Runnable park = () -> {
+                parked.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            if (!region.execute(park, null)) parked.countDown();
+        }
+        try {
+            parked.await();
+            try {
+                task.run();
+            } finally {
+                this.placeNewLocations();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the regions to pause", e);
+        } finally {
+            resume.countDown();
+        }
+    }
+
+    private void arrive(Location location, Runnable arrival) {
+        Region owner = this.regions[this.getRegion(location.getId())];
+        if (owner.isCurrent()) {
+            arrival.run();
+        } else {
+            owner.execute(arrival, null);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Region region : this.regions) {
+            region.executor.shutdown();
+        }
+        try {
+            for (Region region : this.regions) {
+                region.executor.awaitTermination(5, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.gameState.setArrivals((location, arrival) -> arrival.run());
+    }
+
+    private static class Region {
+        private final ExecutorService executor;
+        private volatile Thread thread;
+
+        Region(int index) {
+            this.executor = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "stag-region-" + index);
+                thread.setDaemon(true);
+                this.thread = thread;
+                return thread;
+            });
+        }
+
+        boolean isCurrent() {
+            return Thread.currentThread() == this.thread;
+        }
+
+        boolean execute(Runnable task, CompletableFuture<String> reply) {
+            try {
+                this.executor.execute(task);
+                return true;
+            } catch (RejectedExecutionException e) {
+                if (reply != null) reply.completeExceptionally(e);
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+
+class ActionIndexTests {
+
+  private ActionIndex index;
+  private Location location;
+  private Player player;
+  private GameAction openWithKey;
+  private GameAction openWithAxe;
+  private GameAction openChest;
+
+  private static GameAction action(String trigger, String narration, String... subjects) {
+      return new GameAction(List.of(trigger), List.of(subjects), List.of(), List.of(), narration);
+  }
+
+  private static LinkedList<String> named(String... subjects) {
+      return new LinkedList<>(List.of(subjects));
+  }
+
+  @BeforeEach
+  void setup() {
+      Vocabulary vocabulary = new Vocabulary();
+      index = new ActionIndex(vocabulary.getSymbols());
+      openWithKey = action("open", "key", "trapdoor", "key");
+      openWithAxe = action("open", "axe", "trapdoor", "axe");
+      openChest = action("open", "chest", "chest");
+      index.add("open", openWithKey);
+      index.add("open", openWithAxe);
+      index.add("open", openChest);
+      location = new Location("cabin", "A cabin", vocabulary);
+      location.addFurniture(new Furniture("trapdoor", "A trapdoor"));
+      player = new Player("simon", "cabin", vocabulary);
+  }
+
+  // Subjects left unnamed still have to be at hand, which is what tells the two trapdoor actions apart
+  @Test
+  void testUnnamedSubjectsMustBeAvailable() {
+      assertNull(index.findMatch("open", named("trapdoor"), player, location), "Neither tool is at hand");
+      player.addToInventory(new Artefact("key", "A key"));
+      assertEquals(openWithKey, index.findMatch("open", named("trapdoor"), player, location));
+      location.addArtefact(new Artefact("axe", "An axe"));
+      assertNull(index.findMatch("open", named("trapdoor"), player, location), "Both actions apply, so it is ambiguous");
+      assertEquals(openWithAxe, index.findMatch("open", named("trapdoor", "axe"), player, location));
+  }
+
+  // A named subject outside the action's subjects rules the action out
+  @Test
+  void testExtraneousSubjectRejects() {
+      player.addToInventory(new Artefact("key", "A key"));
+      assertNull(index.findMatch("open", named("trapdoor", "chest"), player, location));
+      assertNull(index.findMatch("open", named("trapdoor", "lantern"), player, location));
+      assertNull(index.findMatch("close", named("trapdoor"), player, location));
+  }
+}
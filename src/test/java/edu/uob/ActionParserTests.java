@@ -0,0 +1,63 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedList;
+
+final class ActionParserTests {
+
+  @TempDir
+  File directory;
+
+  private File writeActions(String content) throws IOException {
+      File actionsFile = new File(directory, "actions.xml");
+      Files.writeString(actionsFile.toPath(), content);
+      return actionsFile;
+  }
+
+  // Every action of the extended file should be streamed out with its keyphrases intact
+  @Test
+  void testExtendedActionsAreStreamed() {
+      LinkedList<GameAction> actions = new LinkedList<>();
+      new ActionParser(actions).parseAction(Paths.get("config", "extended-actions.xml").toFile());
+      assertEquals(8, actions.size(), "Expected all eight extended actions");
+      assertEquals(3, actions.get(1).getTriggers().size(), "Second action should have three keyphrases");
+      assertEquals("cut down", actions.get(1).getTriggers().get(2));
+      assertEquals("You cut down the tree with the axe", actions.get(1).getNarration());
+  }
+
+  // An action without a narration is reported with the line it starts on
+  @Test
+  void testMissingNarrationReportsLine() throws IOException {
+      File actionsFile = this.writeActions("<actions>\n"
+              + "  <action>\n"
+              + "    <triggers><keyphrase>open</keyphrase></triggers>\n"
+              + "    <subjects><entity>door</entity></subjects>\n"
+              + "  </action>\n"
+              + "</actions>\n");
+      IllegalStateException error = assertThrows(IllegalStateException.class,
+              () -> new ActionParser(new LinkedList<GameAction>()).parseAction(actionsFile));
+      assertTrue(error.getMessage().contains("line 2"), "Error did not name the line of the action: " + error.getMessage());
+  }
+
+  // Broken XML is reported with its line number rather than leaving a partial world behind silently
+  @Test
+  void testBrokenXmlReportsLine() throws IOException {
+      File actionsFile = this.writeActions("<actions>\n"
+              + "  <action>\n"
+              + "    <triggers><keyphrase>open</triggers>\n"
+              + "  </action>\n"
+              + "</actions>\n");
+      IllegalStateException error = assertThrows(IllegalStateException.class,
+              () -> new ActionParser(new LinkedList<GameAction>()).parseAction(actionsFile));
+      assertTrue(error.getMessage().contains("line 3"), "Error did not name the broken line: " + error.getMessage());
+  }
+}
@@ -0,0 +1,185 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CommandJournalTests {
+
+  private static final char END_OF_TRANSMISSION = 4;
+  private static final String[] SCRIPT = {
+      "simon: get axe", "simon: goto forest", "simon: drop axe", "sion: get potion", "simon: get axe",
+      "simon: goto cabin", "simon: drop axe", "sion: drop potion", "sion: goto forest", "sion: goto cabin"
+  };
+
+  @TempDir
+  Path directory;
+  private File entitiesFile;
+  private File actionsFile;
+  private File journalFile;
+
+  @BeforeEach
+  void setup() {
+      entitiesFile = Paths.get("config", "extended-entities.dot").toAbsolutePath().toFile();
+      actionsFile = Paths.get("config", "extended-actions.xml").toAbsolutePath().toFile();
+      journalFile = directory.resolve("commands.journal").toFile();
+  }
+
+  // A server restarted over its journal ends up where the first one stopped
+  @Test
+  void testRestartReplaysJournal() throws IOException {
+      GameServer first = new GameServer(entitiesFile, actionsFile);
+      first.openJournal(journalFile);
+      for (int i = 0; i < 13; i++) first.handleCommand(SCRIPT[i % SCRIPT.length]);
+      first.closeJournal();
+      GameServer restarted = new GameServer(entitiesFile, actionsFile);
+      restarted.openJournal(journalFile);
+      assertEquals(stateOf(first), stateOf(restarted));
+      restarted.handleCommand("simon: get axe");
+      restarted.closeJournal();
+      GameServer again = new GameServer(entitiesFile, actionsFile);
+      again.openJournal(journalFile);
+      assertEquals(stateOf(restarted), stateOf(again));
+      again.closeJournal();
+  }
+
+  // Only commands that can change the world are journaled, a new player's first look among them
+  @Test
+  void testReadsAreNotJournaled() throws IOException {
+      GameServer server = new GameServer(entitiesFile, actionsFile);
+      server.openJournal(journalFile);
+      server.handleCommand("simon: look");
+      server.handleCommand("simon: look");
+      server.handleCommand("simon: inv");
+      server.handleCommand("simon: health");
+      server.handleCommand("simon: dance");
+      server.closeJournal();
+      //one record: a 16 byte header and the command
+      assertEquals(16 + "simon: look".length(), journalFile.length());
+  }
+
+  // Regions change the shared storeroom in an order one journal cannot record, so they are not combined
+  @Test
+  void testShardsCannotBeJournaled() throws IOException {
+      GameServer server = new GameServer(entitiesFile, actionsFile);
+      server.startShards(2);
+      assertThrows(IllegalStateException.class, () -> server.openJournal(journalFile));
+      server.stopShards();
+      assertThrows(IllegalArgumentException.class, () -> ServerOptions.parse(new String[] {"--journal=j", "--shards=2"}));
+  }
+
+  // A record torn by a crash is dropped, and new records are appended after the last good one
+  @Test
+  void testTornTailIsCutOff() throws IOException {
+      GameServer first = new GameServer(entitiesFile, actionsFile);
+      first.openJournal(journalFile);
+      first.handleCommand("simon: get axe");
+      first.closeJournal();
+      long intact = journalFile.length();
+      try (OutputStream out = new FileOutputStream(journalFile, true)) {
+          out.write(new byte[] {0, 0, 0, 40, 1, 2, 3});
+      }
+      GameServer restarted = new GameServer(entitiesFile, actionsFile);
+      restarted.openJournal(journalFile);
+      assertEquals(intact, journalFile.length());
+      restarted.handleCommand("simon: goto forest");
+      restarted.closeJournal();
+      GameServer again = new GameServer(entitiesFile, actionsFile);
+      again.openJournal(journalFile);
+      assertEquals(stateOf(restarted), stateOf(again));
+      again.closeJournal();
+  }
+
+  // A server process killed while commands stream in recovers every command it acknowledged
+  @Test
+  void testRecoveryAfterKill() throws Exception {
+      int port;
+      try (ServerSocket probe = new ServerSocket(0)) {
+          port = probe.getLocalPort();
+      }
+      Process server = new ProcessBuilder("java", "-cp", System.getProperty("java.class.path"), "edu.uob.GameServer",
+              "--journal=" + journalFile.getAbsolutePath(), "--port=" + port)
+              .redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+      AtomicInteger acknowledged = new AtomicInteger();
+      Thread client = new Thread(() -> {
+          try {
+              for (int i = 0; ; i++) {
+                  send(port, SCRIPT[i % SCRIPT.length]);
+                  acknowledged.incrementAndGet();
+              }
+          } catch (IOException e) {
+              //the server was killed
+          }
+      });
+      waitForPort(port);
+      client.start();
+      while (acknowledged.get() < 25) Thread.sleep(5);
+      server.destroyForcibly().waitFor();
+      client.join();
+
+      GameServer recovered = new GameServer(entitiesFile, actionsFile);
+      recovered.openJournal(journalFile);
+      int acked = acknowledged.get();
+      //the command in flight when the process died may or may not have reached the journal
+      String withoutInFlight = stateOf(reference(acked));
+      String withInFlight = stateOf(reference(acked + 1));
+      String state = stateOf(recovered);
+      assertTrue(state.equals(withoutInFlight) || state.equals(withInFlight), "Recovered state lost acknowledged commands");
+      recovered.closeJournal();
+  }
+
+  private GameServer reference(int commands) {
+      GameServer server = new GameServer(entitiesFile, actionsFile);
+      for (int i = 0; i < commands; i++) server.handleCommand(SCRIPT[i % SCRIPT.length]);
+      return server;
+  }
+
+  private static String stateOf(GameServer server) {
+      StringBuilder state = new StringBuilder();
+      for (String player : new String[] {"simon", "sion"}) {
+          state.append(server.handleCommand(player + ": look")).append('\n');
+          state.append(server.handleCommand(player + ": inv")).append('\n');
+          state.append(server.handleCommand(player + ": health")).append('\n');
+      }
+      return state.toString();
+  }
+
+  private static void send(int port, String command) throws IOException {
+      try (Socket socket = new Socket("localhost", port)) {
+          socket.getOutputStream().write((command + "\n").getBytes(StandardCharsets.UTF_8));
+          BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+          String line = reader.readLine();
+          while (line != null && !line.contains("" + END_OF_TRANSMISSION)) line = reader.readLine();
+          if (line == null) throw new IOException("Connection closed before the reply ended");
+      }
+  }
+
+  private static void waitForPort(int port) throws InterruptedException {
+      for (int attempt = 0; attempt < 200; attempt++) {
+          //connects and hangs up without a command, so the probe leaves nothing in the journal
+          try {
+              new Socket("localhost", port).close();
+              return;
+          } catch (IOException e) {
+              Thread.sleep(50);
+          }
+      }
+      throw new IllegalStateException("Server did not start");
+  }
+}
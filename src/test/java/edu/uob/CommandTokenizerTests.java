@@ -0,0 +1,49 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedList;
+
+class CommandTokenizerTests {
+
+  // Words are split on any run of whitespace and the buffers are reused between commands
+  @Test
+  void testSpansAndReuse() {
+      CommandTokenizer tokens = new CommandTokenizer();
+      assertTrue(tokens.tokenise("Simon O'Neil-Smith:   Open\tthe  TRAPDOOR "));
+      assertEquals("Simon O'Neil-Smith", tokens.getPlayerName());
+      assertEquals(3, tokens.size());
+      assertEquals("open", tokens.word(0));
+      assertEquals("trapdoor", tokens.word(2));
+      assertTrue(tokens.tokenise("sion: look"));
+      assertEquals(1, tokens.size());
+      assertEquals("sion", tokens.getPlayerName());
+  }
+
+  // The same inputs the old regex rejected are still rejected
+  @Test
+  void testInvalidCommands() {
+      CommandTokenizer tokens = new CommandTokenizer();
+      assertFalse(tokens.tokenise("simon look"), "No name separator");
+      assertFalse(tokens.tokenise(": look"), "Empty player name");
+      assertFalse(tokens.tokenise("simon2: look"), "Digits in the player name");
+      assertFalse(tokens.tokenise("simon:    "), "No command words");
+  }
+
+  // Spans are matched against the trie case-insensitively without building the words
+  @Test
+  void testScanMatchesSpans() {
+      PhraseTrie trie = new PhraseTrie();
+      trie.mark("cut down", PhraseTrie.TRIGGER);
+      trie.mark("tree", PhraseTrie.ENTITY);
+      CommandTokenizer tokens = new CommandTokenizer();
+      tokens.tokenise("simon: please CUT Down the Tree");
+      LinkedList<PhraseTrie.Match> matches = trie.scan(tokens);
+      assertEquals(2, matches.size());
+      assertEquals("cut down", matches.get(0).phrase);
+      assertEquals("tree", matches.get(1).phrase);
+  }
+}
@@ -0,0 +1,140 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class ConcurrentServerTests {
+
+  private static final char END_OF_TRANSMISSION = 4;
+  private ConnectionAcceptor acceptor;
+
+  @BeforeEach
+  void setup() throws IOException {
+      File entitiesFile = Paths.get("config", "extended-entities.dot").toAbsolutePath().toFile();
+      File actionsFile = Paths.get("config", "extended-actions.xml").toAbsolutePath().toFile();
+      GameServer server = new GameServer(entitiesFile, actionsFile);
+      acceptor = new ConnectionAcceptor(server, 0, ConnectionAcceptor.newWorkerPool(8));
+      acceptor.start();
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+      acceptor.close();
+  }
+
+  String sendCommand(String command) throws IOException {
+      try (Socket socket = new Socket("localhost", acceptor.getPort());
+           BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+           BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
+          writer.write(command + "\n");
+          writer.flush();
+          StringBuilder reply = new StringBuilder();
+          String line = reader.readLine();
+          while (line != null && !line.contains("" + END_OF_TRANSMISSION)) {
+              reply.append(line).append("\n");
+              line = reader.readLine();
+          }
+          return reply.toString();
+      }
+  }
+
+  // A client that connects and never sends anything must not hold up other players
+  @Test
+  void testStalledClientDoesNotBlockOthers() throws IOException {
+      try (Socket stalled = new Socket("localhost", acceptor.getPort())) {
+          assertTrue(stalled.isConnected());
+          String response = assertTimeoutPreemptively(Duration.ofMillis(2000), () -> sendCommand("simon: look"),
+                  "Server was blocked by a stalled connection");
+          assertTrue(response.contains("log cabin"), "Did not receive a look response while another client stalled");
+      }
+  }
+
+  // Only one of many simultaneous attempts to pick up the same item may succeed
+  @Test
+  void testConcurrentCommandsAreLinearizable() throws Exception {
+      int clients = 16;
+      ExecutorService pool = Executors.newFixedThreadPool(clients);
+      LinkedList<Future<String>> replies = new LinkedList<>();
+      for (int i = 0; i < clients; i++) {
+          String command = "player" + (char) ('a' + i) + ": get potion";
+          replies.add(pool.submit(() -> sendCommand(command)));
+      }
+      int pickedUp = 0;
+      for (Future<String> reply : replies) {
+          if (reply.get().contains("You picked up")) pickedUp++;
+      }
+      pool.shutdown();
+      assertEquals(1, pickedUp, "Exactly one player should have picked up the potion");
+  }
+
+  // Many clients picking up and putting down the same item all get an answer, and the item is never lost or copied
+  @Test
+  void testConcurrentGetAndDropKeepTheItem() throws Exception {
+      int clients = 8;
+      int rounds = 25;
+      ExecutorService pool = Executors.newFixedThreadPool(clients);
+      LinkedList<Future<Integer>> results = new LinkedList<>();
+      for (int i = 0; i < clients; i++) {
+          String player = "loader" + (char) ('a' + i);
+          Callable<Integer> client = () -> {
+              int pickedUp = 0;
+              for (int n = 0; n < rounds; n++) {
+                  String got = sendCommand(player + ": get axe");
+                  String dropped = sendCommand(player + ": drop axe");
+                  if (got.contains("You picked up axe")) {
+                      pickedUp++;
+                      assertTrue(dropped.contains("You dropped axe"), dropped);
+                  } else {
+                      assertTrue(got.contains("No such item here"), got);
+                      assertTrue(dropped.contains("No such item in inventory"), dropped);
+                  }
+              }
+              return pickedUp;
+          };
+          results.add(pool.submit(client));
+      }
+      int pickedUp = 0;
+      for (Future<Integer> result : results) pickedUp += result.get();
+      pool.shutdown();
+      assertTrue(pickedUp > 0, "Nobody ever picked the axe up");
+      assertTrue(sendCommand("checker: look").contains("axe"), "The axe is no longer in the cabin");
+  }
+
+  // An idle client is disconnected after the read timeout, so it cannot hold the only worker forever
+  @Test
+  void testIdleClientTimesOut() throws Exception {
+      acceptor.close();
+      File entitiesFile = Paths.get("config", "extended-entities.dot").toAbsolutePath().toFile();
+      File actionsFile = Paths.get("config", "extended-actions.xml").toAbsolutePath().toFile();
+      GameServer server = new GameServer(entitiesFile, actionsFile);
+      server.setPersistentSessions(true);
+      acceptor = new ConnectionAcceptor(server, 0, ConnectionAcceptor.newWorkerPool(1), 200);
+      acceptor.start();
+      try (Socket idle = new Socket("localhost", acceptor.getPort())) {
+          assertTrue(idle.isConnected());
+          String response = assertTimeoutPreemptively(Duration.ofMillis(5000), () -> sendCommand("simon: look"),
+                  "An idle connection held the only worker");
+          assertTrue(response.contains("log cabin"));
+          assertEquals(-1, idle.getInputStream().read(), "The idle connection was not closed");
+      }
+  }
+}
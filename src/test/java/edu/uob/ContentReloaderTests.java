@@ -0,0 +1,194 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+class ContentReloaderTests {
+
+  private static final String DANCE = "    <action>\n"
+      + "        <triggers><keyphrase>dance</keyphrase></triggers>\n"
+      + "        <subjects><entity>coin</entity></subjects>\n"
+      + "        <consumed></consumed>\n"
+      + "        <produced></produced>\n"
+      + "        <narration>You dance around the coin</narration>\n"
+      + "    </action>\n";
+  private static final String MEADOW = "        subgraph cluster006 {\n"
+      + "            node [shape = \"none\"];\n"
+      + "            meadow [description = \"A sunny meadow\"];\n"
+      + "            subgraph artefacts {\n"
+      + "                node [shape = \"diamond\"];\n"
+      + "                flower [description = \"A yellow flower\"];\n"
+      + "            }\n"
+      + "        }\n\n";
+
+  @TempDir
+  Path directory;
+  private File entitiesFile;
+  private File actionsFile;
+  private GameServer server;
+
+  @BeforeEach
+  void setup() throws IOException {
+      entitiesFile = directory.resolve("entities.dot").toFile();
+      actionsFile = directory.resolve("actions.xml").toFile();
+      Files.copy(Paths.get("config", "extended-entities.dot"), entitiesFile.toPath());
+      Files.copy(Paths.get("config", "extended-actions.xml"), actionsFile.toPath());
+      server = new GameServer(entitiesFile, actionsFile);
+  }
+
+  @AfterEach
+  void teardown() {
+      server.stopReloading();
+  }
+
+  // A reloaded actions file brings in new actions and drops the ones it no longer has
+  @Test
+  void testActionsReplacedOnReload() throws IOException {
+      assertEquals("No valid trigger found", server.handleCommand("simon: dance with coin"));
+      try (ContentReloader reloader = reloader()) {
+          String actions = read(actionsFile);
+          //the chop action is the second in the file
+          int chop = actions.indexOf("<keyphrase>chop</keyphrase>");
+          int start = actions.lastIndexOf("<action>", chop);
+          int end = actions.indexOf("</action>", chop) + "</action>".length();
+          actions = actions.substring(0, start) + actions.substring(end);
+          write(actionsFile, actions.replace("</actions>", DANCE + "</actions>"));
+          reloader.reloadActions();
+      }
+      assertEquals("You dance around the coin", server.handleCommand("simon: dance with coin"));
+      server.handleCommand("simon: get axe");
+      server.handleCommand("simon: goto forest");
+      assertEquals("No valid trigger found", server.handleCommand("simon: chop tree with axe"));
+  }
+
+  // A command that scanned a trigger the index it then reads has no actions for is answered, not failed
+  @Test
+  void testTriggerWithoutActionsIsReported() {
+      server.getGameState().getVocabulary().addTrigger("dance");
+      assertEquals("No matching action found for 'dance'", server.handleCommand("simon: dance with coin"));
+  }
+
+  // New locations, entities and paths are added, and items players already moved stay where they are
+  @Test
+  void testEntitiesAddedWithoutDisturbingPlayers() throws IOException {
+      server.handleCommand("simon: get axe");
+      server.handleCommand("sion: get potion");
+      server.handleCommand("sion: goto forest");
+      try (ContentReloader reloader = reloader()) {
+          String entities = read(entitiesFile);
+          entities = entities.replace("        subgraph cluster999 {", MEADOW + "        subgraph cluster999 {");
+          entities = entities.replace("clearing -> riverbank", "clearing -> riverbank\n        cabin -> meadow\n        meadow -> cabin");
+          write(entitiesFile, entities);
+          reloader.reloadEntities();
+      }
+      String look = server.handleCommand("simon: look");
+      assertTrue(look.contains("meadow"));
+      assertFalse(look.contains("axe"));
+      assertFalse(look.contains("potion"));
+      assertTrue(server.handleCommand("simon: inv").contains("axe"));
+      assertTrue(server.handleCommand("sion: look").contains("forest"));
+      server.handleCommand("simon: goto meadow");
+      assertTrue(server.handleCommand("simon: look").contains("flower"));
+      assertTrue(server.handleCommand("simon: get flower").contains("flower"));
+  }
+
+  // Saving the actions file is enough, the watcher picks the change up on its own
+  @Test
+  void testWatcherReloadsChangedFile() throws Exception {
+      server.startReloading(entitiesFile, actionsFile);
+      write(actionsFile, read(actionsFile).replace("</actions>", DANCE + "</actions>"));
+      String reply = server.handleCommand("simon: dance with coin");
+      for (int attempt = 0; attempt < 200 && !reply.equals("You dance around the coin"); attempt++) {
+          Thread.sleep(50);
+          reply = server.handleCommand("simon: dance with coin");
+      }
+      assertEquals("You dance around the coin", reply);
+  }
+
+  // A reload that fails with an unexpected exception is logged and the watcher keeps going
+  @Test
+  void testWatcherSurvivesFailedReload() throws Exception {
+      AtomicBoolean failed = new AtomicBoolean();
+      Consumer<Runnable> pause = change -> {
+          if (failed.compareAndSet(false, true)) throw new UnsupportedOperationException("apply failed");
+          change.run();
+      };
+      try (ContentReloader reloader = new ContentReloader(server.getGameState(), server.getCommandProcessor(),
+              entitiesFile, actionsFile, pause)) {
+          reloader.start();
+          write(actionsFile, read(actionsFile).replace("</actions>", DANCE + "</actions>"));
+          for (int attempt = 0; attempt < 200 && !failed.get(); attempt++) {
+              Thread.sleep(50);
+          }
+          assertTrue(failed.get());
+          String reply = server.handleCommand("simon: dance with coin");
+          for (int attempt = 0; attempt < 200 && !reply.equals("You dance around the coin"); attempt++) {
+              write(actionsFile, read(actionsFile));
+              Thread.sleep(50);
+              reply = server.handleCommand("simon: dance with coin");
+          }
+          assertEquals("You dance around the coin", reply);
+      }
+  }
+
+  // With a journal open a reload is checkpointed, so a restart never replays older commands against the new files
+  @Test
+  void testReloadWithJournalIsCheckpointed() throws Exception {
+      File journal = directory.resolve("commands.journal").toFile();
+      File checkpoint = directory.resolve("world.checkpoint").toFile();
+      server.openJournal(journal);
+      server.startCheckpoints(checkpoint, 3600000);
+      server.handleCommand("simon: get axe");
+      server.startReloading(entitiesFile, actionsFile);
+      write(actionsFile, read(actionsFile).replace("</actions>", DANCE + "</actions>"));
+      for (int attempt = 0; attempt < 200 && !checkpoint.isFile(); attempt++) {
+          Thread.sleep(50);
+      }
+      assertTrue(checkpoint.isFile());
+      assertEquals("You dance around the coin", server.handleCommand("simon: dance with coin"));
+      server.stopCheckpoints();
+      server.closeJournal();
+      GameServer restarted = new GameServer(entitiesFile, actionsFile);
+      restarted.restoreCheckpoint(checkpoint);
+      restarted.openJournal(journal);
+      assertTrue(restarted.handleCommand("simon: inv").contains("axe"));
+      restarted.closeJournal();
+  }
+
+  // Reloading while a journal is open is refused unless reloads are checkpointed
+  @Test
+  void testReloadWithJournalNeedsCheckpoints() throws IOException {
+      server.openJournal(directory.resolve("commands.journal").toFile());
+      server.watchContent(entitiesFile, actionsFile);
+      assertThrows(IllegalStateException.class, () -> server.startReloading());
+      server.closeJournal();
+  }
+
+  //read before the files change, so it knows what the update adds
+  private ContentReloader reloader() throws IOException {
+      return new ContentReloader(server.getGameState(), server.getCommandProcessor(), entitiesFile, actionsFile, Runnable::run);
+  }
+
+  private static String read(File file) throws IOException {
+      return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+  }
+
+  private static void write(File file, String contents) throws IOException {
+      Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+  }
+}
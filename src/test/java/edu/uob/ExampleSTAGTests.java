@@ -69,6 +69,61 @@ class ExampleSTAGTests {
       assertTrue(response.contains("key"), "Failed attempt to use 'goto' command to move to the forest - there is no key in the current location");
   }
 
+  // Entities destroyed by an action should drop out of the command vocabulary
+  @Test
+  void testConsumedFurnitureIsNoLongerASubject()
+  {
+      this.sendCommandToServer("simon: get axe");
+      this.sendCommandToServer("simon: goto forest");
+      String response = this.sendCommandToServer("simon: chop tree");
+      assertTrue(response.toLowerCase().contains("cut down the tree"), "Failed to chop down the tree with the axe");
+      response = this.sendCommandToServer("simon: chop tree");
+      assertTrue(response.contains("must input at least one subject"), "Tree was still recognised after being consumed");
+  }
+
+  // Keyphrases made of several words should be recognised as a single trigger
+  @Test
+  void testMultiWordTrigger()
+  {
+      this.sendCommandToServer("simon: get axe");
+      this.sendCommandToServer("simon: goto forest");
+      String response = this.sendCommandToServer("simon: please cut down the tree");
+      assertTrue(response.toLowerCase().contains("cut down the tree"), "Multi-word trigger 'cut down' was not matched");
+      response = this.sendCommandToServer("simon: look");
+      assertTrue(response.toLowerCase().contains("log"), "Cutting down the tree did not produce a log");
+  }
+
+  // Cached look output must follow players coming and going and items being picked up
+  @Test
+  void testLookFollowsChanges()
+  {
+      this.sendCommandToServer("simon: look");
+      String response = this.sendCommandToServer("sion: look");
+      assertTrue(response.contains("simon"), "Other player in the cabin is not listed");
+      assertTrue(response.toLowerCase().contains("axe"), "Axe missing from the cabin");
+      this.sendCommandToServer("simon: get axe");
+      this.sendCommandToServer("simon: goto forest");
+      response = this.sendCommandToServer("sion: look");
+      assertFalse(response.contains("simon"), "Player who left is still listed");
+      assertFalse(response.toLowerCase().contains("axe"), "Picked up axe is still shown in the cabin");
+      response = this.sendCommandToServer("simon: look");
+      assertFalse(response.contains("Other players"), "Player in another location is listed");
+  }
+
+  // An item carried by another player blocks the action, and occupancy follows each player
+  @Test
+  void testItemHeldByOtherPlayer()
+  {
+      this.sendCommandToServer("simon: get axe");
+      this.sendCommandToServer("sion: goto forest");
+      String response = this.sendCommandToServer("sion: chop tree with axe");
+      assertTrue(response.contains("'axe' is not available"), "Axe held by simon was not reported as unavailable");
+      GameState gameState = server.getGameState();
+      int cabin = gameState.getSymbols().id("cabin");
+      assertTrue(gameState.getPlayersAt(cabin).contains(gameState.getPlayer("simon")), "Occupancy lost simon");
+      assertFalse(gameState.getPlayersAt(cabin).contains(gameState.getPlayer("sion")), "Occupancy kept sion in the cabin");
+  }
+
   // Add more unit tests or integration tests here.
 
 }
@@ -0,0 +1,133 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+class GameLoopTests {
+
+  private static final char END_OF_TRANSMISSION = 4;
+  private GameServer server;
+
+  @BeforeEach
+  void setup() {
+      File entitiesFile = Paths.get("config", "extended-entities.dot").toAbsolutePath().toFile();
+      File actionsFile = Paths.get("config", "extended-actions.xml").toAbsolutePath().toFile();
+      server = new GameServer(entitiesFile, actionsFile);
+      server.startGameLoop(64);
+  }
+
+  @AfterEach
+  void teardown() {
+      server.stopGameLoop();
+  }
+
+  // Commands queued from many threads are applied one at a time, so only one player gets the potion
+  @Test
+  void testQueuedCommandsAreLinearizable() throws Exception {
+      LinkedList<CompletableFuture<String>> replies = new LinkedList<>();
+      LinkedList<Thread> senders = new LinkedList<>();
+      for (int i = 0; i < 16; i++) {
+          String command = "player" + (char) ('a' + i) + ": get potion";
+          CompletableFuture<String> reply = new CompletableFuture<>();
+          replies.add(reply);
+          senders.add(new Thread(() -> reply.complete(server.handleCommand(command))));
+      }
+      for (Thread sender : senders) sender.start();
+      for (Thread sender : senders) sender.join();
+      int pickedUp = 0;
+      for (CompletableFuture<String> reply : replies) {
+          if (reply.join().contains("You picked up")) pickedUp++;
+      }
+      assertEquals(1, pickedUp, "Potion was picked up more than once");
+  }
+
+  // Malformed commands are answered without waiting for the loop
+  @Test
+  void testMalformedCommandAnsweredDirectly() {
+      CompletableFuture<String> reply = server.submitCommand("no separator here");
+      assertTrue(reply.isDone());
+      assertEquals("Missing valid trigger", reply.join());
+  }
+
+  // Pipelined commands on one selector connection come back in the order they were sent
+  @Test
+  void testNioRepliesKeepCommandOrder() throws IOException {
+      try (NioGameServer nioServer = new NioGameServer(server, 0, 1)) {
+          nioServer.start();
+          try (Socket socket = new Socket("localhost", nioServer.getPort())) {
+              socket.getOutputStream().write("simon: get axe\nbad command\nsimon: inv\nsimon: drop axe\n".getBytes(StandardCharsets.UTF_8));
+              BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+              assertTrue(readReply(reader).contains("picked up"));
+              assertTrue(readReply(reader).contains("Missing valid trigger"));
+              assertTrue(readReply(reader).contains("axe"));
+              assertTrue(readReply(reader).contains("dropped"));
+          }
+      }
+  }
+
+  // A full queue stops reading from the connection that filled it, and the selector thread it shares
+  // with other connections keeps answering them
+  @Test
+  void testFullQueueDoesNotBlockSelector() throws Exception {
+      server.stopGameLoop();
+      server.startGameLoop(1);
+      server.handleCommand("sion: look");
+      CountDownLatch paused = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      server.getGameLoop().runPaused(() -> {
+          paused.countDown();
+          try {
+              release.await();
+          } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+          }
+      });
+      paused.await();
+      try (NioGameServer nioServer = new NioGameServer(server, 0, 1)) {
+          nioServer.start();
+          try (Socket flooding = new Socket("localhost", nioServer.getPort());
+               Socket other = new Socket("localhost", nioServer.getPort())) {
+              flooding.getOutputStream().write("simon: get axe\nsimon: inv\nsimon: drop axe\n".getBytes(StandardCharsets.UTF_8));
+              Thread.sleep(100);
+              other.getOutputStream().write("sion: look\n".getBytes(StandardCharsets.UTF_8));
+              BufferedReader otherReader = new BufferedReader(new InputStreamReader(other.getInputStream()));
+              String look = assertTimeoutPreemptively(Duration.ofMillis(2000), () -> readReply(otherReader),
+                      "The selector thread was blocked by a full queue");
+              assertTrue(look.contains("log cabin"));
+              release.countDown();
+              BufferedReader reader = new BufferedReader(new InputStreamReader(flooding.getInputStream()));
+              assertTrue(readReply(reader).contains("picked up"));
+              assertTrue(readReply(reader).contains("axe"));
+              assertTrue(readReply(reader).contains("dropped"));
+          }
+      } finally {
+          release.countDown();
+      }
+  }
+
+  String readReply(BufferedReader reader) throws IOException {
+      StringBuilder reply = new StringBuilder();
+      String line = reader.readLine();
+      while (line != null && !line.contains("" + END_OF_TRANSMISSION)) {
+          reply.append(line).append("\n");
+          line = reader.readLine();
+      }
+      return reply.toString();
+  }
+}
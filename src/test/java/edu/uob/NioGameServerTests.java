@@ -0,0 +1,95 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.LinkedList;
+
+class NioGameServerTests {
+
+  private static final char END_OF_TRANSMISSION = 4;
+  private NioGameServer nioServer;
+
+  @BeforeEach
+  void setup() throws IOException {
+      File entitiesFile = Paths.get("config", "extended-entities.dot").toAbsolutePath().toFile();
+      File actionsFile = Paths.get("config", "extended-actions.xml").toAbsolutePath().toFile();
+      GameServer server = new GameServer(entitiesFile, actionsFile);
+      nioServer = new NioGameServer(server, 0, 2);
+      nioServer.start();
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+      nioServer.close();
+  }
+
+  String readReply(BufferedReader reader) throws IOException {
+      StringBuilder reply = new StringBuilder();
+      String line = reader.readLine();
+      while (line != null && !line.contains("" + END_OF_TRANSMISSION)) {
+          reply.append(line).append("\n");
+          line = reader.readLine();
+      }
+      return reply.toString();
+  }
+
+  // The existing one-shot client protocol must keep working against the selector server
+  @Test
+  void testOneShotClientIsServed() throws IOException {
+      try (Socket socket = new Socket("localhost", nioServer.getPort())) {
+          socket.getOutputStream().write("simon: look\n".getBytes(StandardCharsets.UTF_8));
+          BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+          assertTrue(readReply(reader).contains("log cabin"), "Did not receive a look response");
+      }
+  }
+
+  // Commands split across several packets are framed on the newline
+  @Test
+  void testCommandSplitAcrossWrites() throws Exception {
+      try (Socket socket = new Socket("localhost", nioServer.getPort())) {
+          OutputStream out = socket.getOutputStream();
+          out.write("simon: get po".getBytes(StandardCharsets.UTF_8));
+          out.flush();
+          Thread.sleep(50);
+          out.write("tion\r\nsimon: inv\n".getBytes(StandardCharsets.UTF_8));
+          out.flush();
+          BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+          assertTrue(readReply(reader).contains("picked up"), "Split command was not reassembled");
+          assertTrue(readReply(reader).contains("potion"), "Second command on the connection was not answered");
+      }
+  }
+
+  // Many sessions stay open at the same time and are all answered
+  @Test
+  void testManyOpenSessions() throws IOException {
+      int sessions = 500;
+      LinkedList<Socket> sockets = new LinkedList<>();
+      try {
+          for (int i = 0; i < sessions; i++) {
+              Socket socket = new Socket("localhost", nioServer.getPort());
+              sockets.add(socket);
+              socket.getOutputStream().write("simon: health\n".getBytes(StandardCharsets.UTF_8));
+          }
+          int answered = 0;
+          for (Socket socket : sockets) {
+              BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+              if (readReply(reader).contains("3")) answered++;
+          }
+          assertEquals(sessions, answered, "Not every open session was answered");
+      } finally {
+          for (Socket socket : sockets) socket.close();
+      }
+  }
+}
@@ -0,0 +1,63 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+
+class PathGraphTests {
+
+  // Listings keep insertion order and follow paths opened and closed after compaction
+  @Test
+  void testOverlayAfterCompact() {
+      SymbolTable symbols = new SymbolTable();
+      PathGraph graph = new PathGraph(symbols);
+      int cabin = symbols.intern("cabin");
+      int forest = symbols.intern("forest");
+      int cellar = symbols.intern("cellar");
+      graph.addPath(cabin, forest);
+      graph.compact();
+      assertEquals("forest", graph.describe(cabin));
+      graph.addPath(cabin, cellar);
+      graph.addPath(cabin, cellar);
+      assertEquals("forest, cellar", graph.describe(cabin), "Cached listing was not invalidated");
+      graph.removePath(cabin, forest);
+      assertFalse(graph.hasPath(cabin, forest));
+      assertTrue(graph.hasPath(cabin, cellar));
+      graph.compact();
+      assertEquals("cellar", graph.describe(cabin));
+      assertEquals("", graph.describe(forest));
+  }
+
+  // Random adds and removes must agree with a plain set of edges, across compactions
+  @Test
+  void testEdgeChecksMatchReference() {
+      PathGraph graph = new PathGraph(new SymbolTable());
+      HashSet<Long> reference = new HashSet<>();
+      Random random = new Random(42);
+      for (int step = 0; step < 20_000; step++) {
+          int from = random.nextInt(200);
+          int to = random.nextInt(200);
+          long edge = ((long) from << 32) | to;
+          if (random.nextInt(3) == 0) {
+              graph.removePath(from, to);
+              reference.remove(edge);
+          } else {
+              graph.addPath(from, to);
+              reference.add(edge);
+          }
+          if (step % 5_000 == 0) graph.compact();
+      }
+      int edges = 0;
+      for (int from = 0; from < 200; from++) {
+          edges += graph.degree(from);
+          for (int to = 0; to < 200; to++) {
+              assertEquals(reference.contains(((long) from << 32) | to), graph.hasPath(from, to));
+          }
+      }
+      assertEquals(reference.size(), edges);
+  }
+}
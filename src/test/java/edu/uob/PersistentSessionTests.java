@@ -0,0 +1,65 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.file.Paths;
+
+class PersistentSessionTests {
+
+  private static final char END_OF_TRANSMISSION = 4;
+
+  private ConnectionAcceptor startServer(boolean persistentSessions) throws IOException {
+      File entitiesFile = Paths.get("config", "extended-entities.dot").toAbsolutePath().toFile();
+      File actionsFile = Paths.get("config", "extended-actions.xml").toAbsolutePath().toFile();
+      GameServer server = new GameServer(entitiesFile, actionsFile);
+      server.setPersistentSessions(persistentSessions);
+      ConnectionAcceptor acceptor = new ConnectionAcceptor(server, 0, ConnectionAcceptor.newWorkerPool(4));
+      acceptor.start();
+      return acceptor;
+  }
+
+  // Several commands are sent before any reply is read, the replies must come back in order
+  @Test
+  void testPipelinedCommandsOnOneConnection() throws IOException {
+      try (ConnectionAcceptor acceptor = this.startServer(true);
+           GameSession session = new GameSession("simon", "localhost", acceptor.getPort())) {
+          session.send("get potion");
+          session.send("inv");
+          session.send("goto forest");
+          session.send("look");
+          assertTrue(session.receive().contains("picked up"), "First pipelined reply should be the pick up");
+          assertTrue(session.receive().contains("potion"), "Second pipelined reply should list the potion");
+          assertTrue(session.receive().contains("forest"), "Third pipelined reply should be the move");
+          assertTrue(session.receive().contains("key"), "Fourth pipelined reply should describe the forest");
+          assertTrue(session.request("health").contains("3"), "Session should stay usable after pipelining");
+      }
+  }
+
+  // Without persistent sessions the server still closes the connection after one reply
+  @Test
+  void testOneShotConnectionsRemainTheDefault() throws IOException {
+      try (ConnectionAcceptor acceptor = this.startServer(false);
+           Socket socket = new Socket("localhost", acceptor.getPort());
+           BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+           BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
+          writer.write("simon: look\nsimon: inv\n");
+          writer.flush();
+          String line = reader.readLine();
+          while (line != null && !line.contains("" + END_OF_TRANSMISSION)) {
+              line = reader.readLine();
+          }
+          assertEquals("" + END_OF_TRANSMISSION, line, "Reply was not terminated");
+          assertNull(reader.readLine(), "Server should close a one-shot connection after the first reply");
+      }
+  }
+}
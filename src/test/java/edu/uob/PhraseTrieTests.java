@@ -0,0 +1,69 @@
+package edu.uob;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class PhraseTrieTests {
+
+  // The longest keyphrase starting at a word should win over its shorter prefix
+  @Test
+  void testLongestPhraseIsMatched() {
+      PhraseTrie trie = new PhraseTrie();
+      trie.mark("cut", PhraseTrie.TRIGGER);
+      trie.mark("cut down", PhraseTrie.TRIGGER);
+      trie.mark("tree", PhraseTrie.ENTITY);
+      LinkedList<PhraseTrie.Match> matches = trie.scan(new String[] {"please", "cut", "down", "the", "tree"});
+      assertEquals(2, matches.size(), "Expected one trigger and one subject");
+      assertEquals("cut down", matches.get(0).phrase, "Multi-word trigger was not matched");
+      assertTrue(matches.get(0).is(PhraseTrie.TRIGGER));
+      assertEquals("tree", matches.get(1).phrase);
+      assertTrue(matches.get(1).is(PhraseTrie.ENTITY));
+  }
+
+  // Unmarking one kind should leave the other kinds of the same phrase in place
+  @Test
+  void testUnmarkKeepsOtherKinds() {
+      PhraseTrie trie = new PhraseTrie();
+      trie.mark("health", PhraseTrie.TRIGGER);
+      trie.mark("health", PhraseTrie.ENTITY);
+      trie.unmark("health", PhraseTrie.ENTITY);
+      LinkedList<PhraseTrie.Match> matches = trie.scan(new String[] {"health"});
+      assertEquals(1, matches.size());
+      assertTrue(matches.get(0).is(PhraseTrie.TRIGGER));
+      assertFalse(matches.get(0).is(PhraseTrie.ENTITY), "Entity kind should have been cleared");
+  }
+
+  // A scan running while names are being added finds every name that was added before it started
+  @Test
+  void testScanWhileMarking() throws InterruptedException {
+      PhraseTrie trie = new PhraseTrie();
+      int names = 5000;
+      AtomicInteger marked = new AtomicInteger();
+      AtomicReference<String> missed = new AtomicReference<>();
+      Thread writer = new Thread(() -> {
+          for (int i = 0; i < names; i++) {
+              trie.mark("lamp " + i, PhraseTrie.ENTITY);
+              marked.set(i + 1);
+          }
+      });
+      writer.start();
+      while (marked.get() < names && missed.get() == null) {
+          int seen = marked.get();
+          if (seen == 0) continue;
+          String name = "lamp " + (seen - 1);
+          LinkedList<PhraseTrie.Match> matches = trie.scan(new String[] {"get", "lamp", String.valueOf(seen - 1)});
+          if (matches.size() != 1 || !matches.get(0).phrase.equals(name)) missed.set(name);
+      }
+      writer.join();
+      assertNull(missed.get(), "A marked name was not found by a concurrent scan");
+      assertEquals(1, trie.scan(new String[] {"lamp", "4999"}).size());
+  }
+}
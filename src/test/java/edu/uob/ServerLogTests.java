@@ -0,0 +1,93 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+class ServerLogTests {
+
+  // Commands are written at debug with player, latency and outcome, and entries below the level are skipped
+  @Test
+  void testStructuredCommandEntries() {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ServerLog log = new ServerLog(new PrintStream(bytes, true, StandardCharsets.UTF_8), 16, ServerLog.Level.DEBUG, 1);
+      log.start();
+      log.command("simon: get axe", "You picked up the axe\nand more", 1_500_000);
+      log.warn("Reload failed", "bad file");
+      log.close();
+      String[] lines = bytes.toString(StandardCharsets.UTF_8).split("\n");
+      assertEquals(2, lines.length);
+      assertTrue(lines[0].contains(" DEBUG command player=simon command=\"simon: get axe\" latency_us=1500 outcome=\"You picked up the axe\""), lines[0]);
+      assertTrue(lines[1].contains(" WARN Reload failed detail=\"bad file\""), lines[1]);
+
+      bytes.reset();
+      ServerLog quiet = new ServerLog(new PrintStream(bytes, true, StandardCharsets.UTF_8), 16, ServerLog.Level.INFO, 1);
+      quiet.start();
+      quiet.command("simon: get axe", "You picked up the axe", 1_500_000);
+      quiet.debug("Connection established");
+      quiet.info("Server listening");
+      quiet.close();
+      String output = bytes.toString(StandardCharsets.UTF_8);
+      assertTrue(output.contains(" INFO Server listening"), output);
+      assertFalse(output.contains("command"));
+      assertFalse(output.contains("Connection established"));
+  }
+
+  // Entries logged before the log was started, or while its thread slept, are all written out by close()
+  @Test
+  void testCloseWritesEverythingOut() throws InterruptedException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ServerLog never = new ServerLog(new PrintStream(bytes, true, StandardCharsets.UTF_8), 16, ServerLog.Level.INFO, 1);
+      never.info("before start");
+      never.close();
+      assertTrue(bytes.toString(StandardCharsets.UTF_8).contains("before start"));
+
+      bytes.reset();
+      ServerLog idle = new ServerLog(new PrintStream(bytes, true, StandardCharsets.UTF_8), 16, ServerLog.Level.INFO, 1);
+      idle.start();
+      Thread.sleep(50);
+      idle.info("after a sleep");
+      idle.close();
+      assertTrue(bytes.toString(StandardCharsets.UTF_8).contains("after a sleep"));
+  }
+
+  // A full ring drops entries and reports how many, rather than making the caller wait
+  @Test
+  void testFullRingDropsEntries() {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ServerLog log = new ServerLog(new PrintStream(bytes, true, StandardCharsets.UTF_8), 4, ServerLog.Level.INFO, 1);
+      for (int i = 0; i < 10; i++) log.info("entry " + i);
+      assertEquals(6, log.getDropped());
+      log.start();
+      log.close();
+      String output = bytes.toString(StandardCharsets.UTF_8);
+      assertTrue(output.contains("entry 3"));
+      assertFalse(output.contains("entry 4"));
+      assertTrue(output.contains("log entries dropped count=6"));
+  }
+
+  // Sampling keeps about one command in n, from many threads at once
+  @Test
+  void testSampledCommands() throws InterruptedException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ServerLog log = new ServerLog(new PrintStream(bytes, true, StandardCharsets.UTF_8), 8192, ServerLog.Level.DEBUG, 4);
+      log.start();
+      Thread[] threads = new Thread[4];
+      for (int t = 0; t < threads.length; t++) {
+          threads[t] = new Thread(() -> {
+              for (int i = 0; i < 1000; i++) log.command("simon: look", "A log cabin", 1000);
+          });
+          threads[t].start();
+      }
+      for (Thread thread : threads) thread.join();
+      log.close();
+      long lines = bytes.toString(StandardCharsets.UTF_8).lines().count();
+      assertTrue(lines > 800 && lines < 1200, "Kept " + lines + " of 4000 commands");
+      assertEquals(0, log.getDropped());
+  }
+}
@@ -0,0 +1,123 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Random;
+
+class ServerMetricsTests {
+
+  private GameServer server;
+
+  @BeforeEach
+  void setup() {
+      File entitiesFile = Paths.get("config", "extended-entities.dot").toAbsolutePath().toFile();
+      File actionsFile = Paths.get("config", "extended-actions.xml").toAbsolutePath().toFile();
+      server = new GameServer(entitiesFile, actionsFile);
+  }
+
+  // Every value lands in a bucket whose upper end is within 1/32 of it
+  @Test
+  void testHistogramBucketsAreTight() {
+      Random random = new Random(42);
+      for (int i = 0; i < 100000; i++) {
+          long value = random.nextLong() >>> (1 + random.nextInt(63));
+          long highest = LatencyHistogram.highestIn(LatencyHistogram.bucketOf(value));
+          assertTrue(highest >= value && highest - value <= value / 32, "Bucket too wide for " + value);
+      }
+  }
+
+  // Percentiles of a known distribution come back within the histogram's precision
+  @Test
+  void testHistogramPercentiles() {
+      LatencyHistogram histogram = new LatencyHistogram();
+      for (long value = 1; value <= 100000; value++) histogram.record(value);
+      assertEquals(100000, histogram.getCount());
+      assertEquals(100000, histogram.getMax());
+      assertEquals(50000, histogram.getPercentile(50), 50000 / 32.0);
+      assertEquals(99000, histogram.getPercentile(99), 99000 / 32.0);
+      assertEquals(100000, histogram.getPercentile(100));
+  }
+
+  // Commands are counted by type, and each stage they pass through is timed
+  @Test
+  void testCommandsCountedByType() {
+      server.handleCommand("simon: get axe");
+      server.handleCommand("simon: goto forest");
+      server.handleCommand("simon: chop tree with axe");
+      server.handleCommand("simon: look");
+      server.handleCommand("simon dance");
+      ServerMetrics metrics = server.getMetrics();
+      assertEquals(1, metrics.getCommandCount("get"));
+      assertEquals(1, metrics.getCommandCount("goto"));
+      assertEquals(1, metrics.getCommandCount("action"));
+      assertEquals(1, metrics.getCommandCount("look"));
+      assertEquals(1, metrics.getCommandCount("invalid"));
+      assertEquals(1, metrics.getHistogram(ServerMetrics.Stage.MATCH).getCount());
+      assertTrue(metrics.getHistogram(ServerMetrics.Stage.EXECUTE).getCount() >= 3);
+  }
+
+  // The entity count kept as entities move, appear and are consumed matches a walk over the world
+  @Test
+  void testEntityCountMatchesWorld() {
+      String[] script = {"simon: get axe", "simon: goto forest", "simon: chop tree with axe", "simon: get log",
+              "simon: get key", "simon: goto cabin", "simon: open trapdoor with key", "simon: drop axe",
+              "sion: get potion", "sion: drink potion", "simon: goto cellar", "simon: fight elf"};
+      for (String command : script) {
+          server.handleCommand(command);
+          assertEquals(countEntities(server.getGameState()), server.getGameState().getVocabulary().getEntityCount(), command);
+      }
+  }
+
+  private static long countEntities(GameState world) {
+      long entities = 0;
+      for (Location location : world.getLocations().values()) {
+          for (String type : new String[] {"artefacts", "furniture", "characters"}) {
+              entities += location.getEntities(type).size();
+          }
+      }
+      //consumed entities go to the storeroom the world was created with, the parsed one may replace it
+      if (world.getStoreroom() != world.getLocation("storeroom")) {
+          for (String type : new String[] {"artefacts", "furniture", "characters"}) {
+              entities += world.getStoreroom().getEntities(type).size();
+          }
+      }
+      for (Player player : world.getPlayers().values()) {
+          entities += player.getInventoryEntities().size();
+      }
+      return entities;
+  }
+
+  // The endpoint serves counters, latencies and gauges as text
+  @Test
+  void testEndpointServesMetrics() throws IOException {
+      server.handleCommand("simon: get axe");
+      server.handleCommand("sion: look");
+      int port = server.startMetrics(0);
+      try {
+          HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/metrics").openConnection();
+          assertEquals(200, connection.getResponseCode());
+          String body;
+          try (InputStream in = connection.getInputStream()) {
+              body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+          }
+          assertTrue(body.contains("stag_commands_total{type=\"get\"} 1"));
+          assertTrue(body.contains("stag_stage_latency_nanos_count{stage=\"parse\"} 2"));
+          assertTrue(body.contains("stag_players 2"));
+          assertTrue(body.contains("stag_journal_lag 0"));
+          //15 entities including the storeroom's, the axe is now carried but still counted
+          assertTrue(body.contains("stag_entities 15"), body);
+      } finally {
+          server.stopMetrics();
+      }
+  }
+}
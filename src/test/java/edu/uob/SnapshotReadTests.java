@@ -0,0 +1,103 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicReference;
+
+class SnapshotReadTests {
+
+  private GameServer server;
+  private CommandProcessor processor;
+
+  @BeforeEach
+  void setup() {
+      File entitiesFile = Paths.get("config", "extended-entities.dot").toAbsolutePath().toFile();
+      File actionsFile = Paths.get("config", "extended-actions.xml").toAbsolutePath().toFile();
+      server = new GameServer(entitiesFile, actionsFile);
+      processor = server.getCommandProcessor();
+  }
+
+  // Commands that change the world, and players who do not exist yet, are left to a writer
+  @Test
+  void testWritesAreNotServedFromSnapshots() {
+      assertNull(processor.processRead("simon: look"), "A new player has to be created by a writer");
+      server.handleCommand("simon: look");
+      assertNull(processor.processRead("simon: get axe"));
+      assertNull(processor.processRead("simon: open trapdoor"));
+      assertEquals("Invalid command: 'inv' takes no subjects", processor.processRead("simon: inv axe"));
+  }
+
+  // Snapshots are republished by the writer, so reads see every change as soon as it is applied
+  @Test
+  void testSnapshotsFollowChanges() {
+      server.handleCommand("simon: look");
+      String before = processor.processRead("simon: look");
+      assertEquals(server.getGameState().look("simon"), before);
+      server.handleCommand("simon: get axe");
+      String after = processor.processRead("simon: look");
+      assertTrue(before.contains("axe") && !after.contains("axe"), "Look still shows the axe");
+      assertTrue(processor.processRead("simon: inv").contains("axe"));
+      server.handleCommand("sion: look");
+      assertTrue(processor.processRead("simon: look").contains("sion"));
+      server.handleCommand("sion: goto forest");
+      assertTrue(!processor.processRead("simon: look").contains("sion"));
+      assertEquals("3", processor.processRead("simon: health"));
+  }
+
+  // Readers racing a writer always see a whole snapshot, never a half applied command
+  @Test
+  void testReadsDuringWrites() throws Exception {
+      server.handleCommand("simon: look");
+      server.handleCommand("sion: look");
+      server.handleCommand("simon: get axe");
+      String axe = server.handleCommand("simon: inv");
+      server.handleCommand("simon: drop axe");
+      AtomicReference<String> torn = new AtomicReference<>();
+      Thread reader = new Thread(() -> {
+          for (int i = 0; i < 20_000; i++) {
+              String look = server.handleCommand("sion: look");
+              String inv = server.handleCommand("simon: inv");
+              boolean wholeLook = look.startsWith("You are in") && look.contains("You can access from here");
+              boolean wholeInv = inv.equals("Nothing") || inv.equals(axe);
+              if (!wholeLook || !wholeInv) {
+                  torn.compareAndSet(null, look + " / " + inv);
+              }
+          }
+      });
+      reader.start();
+      for (int i = 0; i < 2_000; i++) {
+          server.handleCommand("simon: get axe");
+          server.handleCommand("simon: drop axe");
+      }
+      reader.join();
+      assertNull(torn.get(), "Reader saw an inconsistent snapshot");
+  }
+
+  // A snapshot carries the journal record it was published at, so a later unrelated write that is not
+  // durable yet does not keep its reads away from the snapshot
+  @Test
+  void testSnapshotsCarryTheirJournalSequence(@TempDir Path directory) throws IOException {
+      server.openJournal(directory.resolve("commands.journal").toFile());
+      server.handleCommand("simon: get axe");
+      server.handleCommand("sion: goto forest");
+      GameState world = server.getGameState();
+      Player simon = world.getPlayer("simon");
+      //sion leaving republished the cabin, the last change simon's look shows
+      long cabinSequence = world.getJournalSequence();
+      server.handleCommand("sion: get key");
+      assertTrue(world.getJournalSequence() > cabinSequence);
+      assertEquals(world.look("simon"), world.lookSnapshot(simon, cabinSequence));
+      assertNull(world.lookSnapshot(simon, cabinSequence - 1), "A snapshot ahead of the durable point was served");
+      assertNull(world.lookSnapshot(world.getPlayer("sion"), cabinSequence));
+      server.closeJournal();
+  }
+}
@@ -0,0 +1,34 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import org.junit.jupiter.api.Test;
+
+class SymbolTableTests {
+
+  // Names that differ only in case share an id, and the first spelling is the one given back
+  @Test
+  void testIdsAreCaseFolded() {
+      SymbolTable symbols = new SymbolTable();
+      int forest = symbols.intern("Forest");
+      assertEquals(forest, symbols.intern("forest"));
+      assertEquals(forest, symbols.id("FOREST"));
+      assertEquals("Forest", symbols.name(forest));
+      assertNotEquals(forest, symbols.intern("cabin"));
+      assertEquals(SymbolTable.NONE, symbols.id("cellar"), "Lookups must not intern new names");
+      assertEquals(2, symbols.size());
+  }
+
+  // Paths and player locations are ids, so moving works whatever case the command used
+  @Test
+  void testGotoResolvesThroughIds() {
+      GameState gameState = new GameState("cabin");
+      gameState.addLocation("cabin", "A log cabin");
+      gameState.addLocation("forest", "A dark forest");
+      gameState.addPath("cabin", "forest");
+      gameState.addPlayer("simon");
+      assertEquals("You moved to FOREST", gameState.gotoLocation("simon", "FOREST"));
+      assertEquals("forest", gameState.getPlayer("simon").getLocation());
+      assertEquals("You are already in forest", gameState.gotoLocation("simon", "forest"));
+  }
+}
@@ -0,0 +1,126 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+class WorldCheckpointTests {
+
+  private static final String[] SCRIPT = {
+      "simon: get axe", "simon: goto forest", "simon: chop tree with axe", "simon: get log", "simon: get key",
+      "sion: get potion", "sion: goto forest", "simon: goto cabin", "simon: unlock trapdoor with key",
+      "simon: goto cellar", "simon: hit elf", "simon: hit elf", "simon: hit elf", "sion: drop potion"
+  };
+
+  @TempDir
+  Path directory;
+  private File entitiesFile;
+  private File actionsFile;
+  private File journalFile;
+  private File checkpointFile;
+
+  @BeforeEach
+  void setup() {
+      entitiesFile = Paths.get("config", "extended-entities.dot").toAbsolutePath().toFile();
+      actionsFile = Paths.get("config", "extended-actions.xml").toAbsolutePath().toFile();
+      journalFile = directory.resolve("commands.journal").toFile();
+      checkpointFile = directory.resolve("world.checkpoint").toFile();
+  }
+
+  // A checkpoint plus the journal written after it brings back the state the server stopped in
+  @Test
+  void testCheckpointAndJournalTailRecover() throws IOException {
+      GameServer first = new GameServer(entitiesFile, actionsFile);
+      first.openJournal(journalFile);
+      for (int i = 0; i < 8; i++) first.handleCommand(SCRIPT[i]);
+      first.checkpoint(checkpointFile);
+      for (int i = 8; i < SCRIPT.length; i++) first.handleCommand(SCRIPT[i]);
+      first.closeJournal();
+      assertFalse(CommandJournal.previousSegment(journalFile).exists());
+
+      GameServer restarted = recover();
+      assertEquals(stateOf(first), stateOf(restarted));
+      restarted.closeJournal();
+  }
+
+  // Records the checkpoint covers are rotated out of the journal and never applied twice
+  @Test
+  void testCoveredRecordsAreNotReplayed() throws IOException {
+      GameServer first = new GameServer(entitiesFile, actionsFile);
+      first.openJournal(journalFile);
+      for (String command : SCRIPT) first.handleCommand(command);
+      first.checkpoint(checkpointFile);
+      first.closeJournal();
+      assertEquals(0, journalFile.length());
+
+      GameServer restarted = recover();
+      assertEquals(stateOf(first), stateOf(restarted));
+      //numbering carries on after the checkpoint, so a later restart still skips nothing it needs
+      restarted.handleCommand("simon: goto forest");
+      restarted.closeJournal();
+      GameServer again = recover();
+      assertEquals(stateOf(restarted), stateOf(again));
+      again.closeJournal();
+  }
+
+  // A checkpoint that cannot be written leaves the records it would have covered to be replayed
+  @Test
+  void testFailedCheckpointKeepsJournal() throws IOException {
+      GameServer first = new GameServer(entitiesFile, actionsFile);
+      first.openJournal(journalFile);
+      for (int i = 0; i < 8; i++) first.handleCommand(SCRIPT[i]);
+      File unwritable = directory.resolve("missing").resolve("world.checkpoint").toFile();
+      assertThrows(IOException.class, () -> first.checkpoint(unwritable));
+      assertTrue(CommandJournal.previousSegment(journalFile).exists());
+      for (int i = 8; i < SCRIPT.length; i++) first.handleCommand(SCRIPT[i]);
+      first.closeJournal();
+
+      GameServer restarted = recover();
+      assertEquals(stateOf(first), stateOf(restarted));
+      restarted.closeJournal();
+  }
+
+  // Checkpoints taken while the world is split into regions capture players between them too, shards
+  // are never journaled so the last checkpoint is all there is to recover
+  @Test
+  void testCheckpointWhileSharded() throws IOException {
+      GameServer first = new GameServer(entitiesFile, actionsFile);
+      first.startShards(3);
+      for (int i = 0; i < SCRIPT.length; i++) {
+          first.handleCommand(SCRIPT[i]);
+          if (i % 4 == 0) first.checkpoint(checkpointFile);
+      }
+      first.checkpoint(checkpointFile);
+      first.stopShards();
+
+      GameServer restarted = recover();
+      assertEquals(stateOf(first), stateOf(restarted));
+      restarted.closeJournal();
+  }
+
+  private GameServer recover() throws IOException {
+      GameServer server = new GameServer(entitiesFile, actionsFile);
+      server.restoreCheckpoint(checkpointFile);
+      server.openJournal(journalFile);
+      return server;
+  }
+
+  private static String stateOf(GameServer server) {
+      StringBuilder state = new StringBuilder();
+      for (String player : new String[] {"simon", "sion"}) {
+          state.append(server.handleCommand(player + ": look")).append('\n');
+          state.append(server.handleCommand(player + ": inv")).append('\n');
+          state.append(server.handleCommand(player + ": health")).append('\n');
+      }
+      return state.toString();
+  }
+}
@@ -0,0 +1,44 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+class WorldGeneratorTests {
+
+  @TempDir
+  File directory;
+
+  // The same parameters and seed must always produce byte-identical files
+  @Test
+  void testGenerationIsDeterministic() throws IOException {
+      WorldGenerator generator = new WorldGenerator(20, 6, 1.5, 40, 0.5, 7);
+      generator.write(new File(directory, "a.dot"), new File(directory, "a.xml"));
+      generator.write(new File(directory, "b.dot"), new File(directory, "b.xml"));
+      assertArrayEquals(Files.readAllBytes(new File(directory, "a.dot").toPath()),
+              Files.readAllBytes(new File(directory, "b.dot").toPath()), "Entities file changed between runs");
+      assertArrayEquals(Files.readAllBytes(new File(directory, "a.xml").toPath()),
+              Files.readAllBytes(new File(directory, "b.xml").toPath()), "Actions file changed between runs");
+  }
+
+  // Generated files must load through the normal entity and action parsers
+  @Test
+  void testGeneratedWorldLoads() throws IOException {
+      File entitiesFile = new File(directory, "entities.dot");
+      File actionsFile = new File(directory, "actions.xml");
+      new WorldGenerator(50, 6, 1.0, 100, 0.3, 42).write(entitiesFile, actionsFile);
+      GameServer server = new GameServer(entitiesFile, actionsFile);
+      assertEquals(51, server.getGameState().getLocations().size(), "Expected every location plus the storeroom");
+      String response = server.handleCommand("simon: look");
+      assertTrue(response.contains("Generated location 0"), "Player did not start in the first generated location");
+      assertTrue(response.contains(WorldGenerator.locationName(1)), "Ring path to the next location is missing");
+      response = server.handleCommand("simon: get " + WorldGenerator.entityName(0, 0));
+      assertTrue(response.contains("You picked up"), "Could not pick up a generated artefact");
+  }
+}
@@ -0,0 +1,67 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+class WorldImageTests {
+
+  @TempDir
+  File directory;
+
+  private final File entitiesFile = Paths.get("config", "extended-entities.dot").toAbsolutePath().toFile();
+  private final File actionsFile = Paths.get("config", "extended-actions.xml").toAbsolutePath().toFile();
+
+  private static final String[] SCRIPT = {
+      "simon: look", "simon: get axe", "simon: get potion", "simon: goto forest", "simon: get key",
+      "simon: cut down tree", "simon: goto cabin", "simon: open trapdoor", "simon: goto cellar",
+      "simon: look", "simon: hit elf", "simon: health", "simon: inv", "simon: drink potion", "simon: health"
+  };
+
+  // A server built from the image must answer exactly like one built from the source files
+  @Test
+  void testImageMatchesSourceWorld() {
+      GameServer source = new GameServer(entitiesFile, actionsFile);
+      GameServer image = new GameServer(entitiesFile, actionsFile, new File(directory, "world.img"));
+      assertTrue(new File(directory, "world.img").isFile(), "Image was not written on first load");
+      for (String command : SCRIPT) {
+          assertEquals(source.handleCommand(command), image.handleCommand(command), "Responses differ for " + command);
+      }
+      assertEquals(source.getGameState().getLocations().keySet(), image.getGameState().getLocations().keySet());
+  }
+
+  // An image compiled from other sources is stale and must be rebuilt
+  @Test
+  void testStaleImageIsRebuilt() throws IOException {
+      File image = new File(directory, "world.img");
+      File basicEntities = Paths.get("config", "basic-entities.dot").toAbsolutePath().toFile();
+      File basicActions = Paths.get("config", "basic-actions.xml").toAbsolutePath().toFile();
+      WorldImage.compile(basicEntities, basicActions, image);
+      byte[] stale = Files.readAllBytes(image.toPath());
+      GameServer server = new GameServer(entitiesFile, actionsFile, image);
+      assertNotEquals(stale.length, Files.readAllBytes(image.toPath()).length, "Stale image was not replaced");
+      assertTrue(server.getGameState().getLocations().containsKey("riverbank"), "Server loaded the stale world");
+  }
+
+  // A damaged payload fails its checksum and is recompiled instead of being trusted
+  @Test
+  void testCorruptImageIsRebuilt() throws IOException {
+      File image = new File(directory, "world.img");
+      WorldImage.compile(entitiesFile, actionsFile, image);
+      try (RandomAccessFile file = new RandomAccessFile(image, "rw")) {
+          file.seek(file.length() - 8);
+          file.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+      }
+      assertEquals(null, WorldImage.load(image, WorldImage.sourceChecksum(entitiesFile, actionsFile)));
+      GameServer server = new GameServer(entitiesFile, actionsFile, image);
+      assertTrue(server.handleCommand("simon: look").contains("cabin"), "Corrupt image was not rebuilt");
+  }
+}
@@ -0,0 +1,139 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedList;
+import java.util.concurrent.CompletableFuture;
+
+class WorldShardsTests {
+
+  private static final String[] SCRIPT = {
+      "simon: get axe", "simon: goto forest", "simon: chop tree with axe", "simon: get log",
+      "simon: get key", "simon: goto riverbank", "sion: look", "sion: goto forest", "sion: goto riverbank",
+      "sion: look", "simon: goto forest", "sion: look", "simon: look", "simon: inv", "sion: get potion"
+  };
+
+  private GameServer sharded;
+  private GameServer plain;
+
+  @BeforeEach
+  void setup() {
+      File entitiesFile = Paths.get("config", "extended-entities.dot").toAbsolutePath().toFile();
+      File actionsFile = Paths.get("config", "extended-actions.xml").toAbsolutePath().toFile();
+      sharded = new GameServer(entitiesFile, actionsFile);
+      sharded.startShards(3);
+      plain = new GameServer(entitiesFile, actionsFile);
+  }
+
+  @AfterEach
+  void teardown() {
+      sharded.stopShards();
+  }
+
+  // Every location belongs to a region, and the map is cut between forest and riverbank
+  @Test
+  void testEveryLocationHasARegion() {
+      GameState gameState = plain.getGameState();
+      try (WorldShards shards = new WorldShards(gameState, plain.getCommandProcessor(), 3)) {
+          for (Location location : gameState.getLocations().values()) {
+              int region = shards.getRegion(location.getId());
+              assertTrue(region >= 0 && region < shards.getRegionCount());
+          }
+          int forest = gameState.getLocation("forest").getId();
+          int riverbank = gameState.getLocation("riverbank").getId();
+          assertNotEquals(shards.getRegion(forest), shards.getRegion(riverbank));
+      }
+  }
+
+  // Locations a reload adds join the region of a location they connect to, and an unconnected one
+  // joins the region with the fewest locations
+  @Test
+  void testReloadedLocationsArePlaced(@TempDir Path directory) throws IOException {
+      File entitiesFile = directory.resolve("entities.dot").toFile();
+      File actionsFile = Paths.get("config", "extended-actions.xml").toAbsolutePath().toFile();
+      Files.copy(Paths.get("config", "extended-entities.dot"), entitiesFile.toPath());
+      GameServer server = new GameServer(entitiesFile, actionsFile);
+      GameState gameState = server.getGameState();
+      try (WorldShards shards = new WorldShards(gameState, server.getCommandProcessor(), 3)) {
+          shards.start();
+          int riverbank = shards.getRegion(gameState.getLocation("riverbank").getId());
+          assertNotEquals(0, riverbank, "The riverbank has to be outside the region unknown ids used to fall into");
+          ContentReloader reloader = new ContentReloader(gameState, server.getCommandProcessor(), entitiesFile,
+                  actionsFile, shards::runPaused);
+          String entities = new String(Files.readAllBytes(entitiesFile.toPath()), StandardCharsets.UTF_8);
+          entities = entities.replace("        subgraph cluster999 {", location("meadow") + location("island")
+                  + "        subgraph cluster999 {");
+          entities = entities.replace("clearing -> riverbank", "clearing -> riverbank\n        riverbank -> meadow");
+          Files.write(entitiesFile.toPath(), entities.getBytes(StandardCharsets.UTF_8));
+          reloader.reloadEntities();
+          reloader.close();
+          assertEquals(riverbank, shards.getRegion(gameState.getLocation("meadow").getId()));
+          int[] sizes = new int[shards.getRegionCount()];
+          for (Location location : gameState.getLocations().values()) {
+              if (!location.getName().equals("island")) sizes[shards.getRegion(location.getId())]++;
+          }
+          int island = shards.getRegion(gameState.getLocation("island").getId());
+          for (int size : sizes) assertTrue(sizes[island] <= size, "The island did not join the smallest region");
+      }
+  }
+
+  private static String location(String name) {
+      return "        subgraph cluster" + name + " {\n"
+          + "            node [shape = \"none\"];\n"
+          + "            " + name + " [description = \"A new " + name + "\"];\n"
+          + "        }\n\n";
+  }
+
+  // A script that crosses region boundaries gets the same replies as the unsharded server
+  @Test
+  void testShardedRepliesMatchSequential() {
+      for (String command : SCRIPT) {
+          assertEquals(plain.handleCommand(command), sharded.handleCommand(command), command);
+      }
+  }
+
+  // A player arriving from another region is seen there, and no longer where they left
+  @Test
+  void testCrossRegionArrivalIsVisible() {
+      sharded.handleCommand("simon: goto forest");
+      sharded.handleCommand("simon: goto riverbank");
+      sharded.handleCommand("sion: goto forest");
+      assertFalse(sharded.handleCommand("sion: look").contains("simon"));
+      sharded.handleCommand("sion: goto riverbank");
+      assertTrue(sharded.handleCommand("sion: look").contains("simon"));
+  }
+
+  // Players in different regions act at the same time, but an item is still only picked up once
+  @Test
+  void testConcurrentCommandsAcrossRegions() throws Exception {
+      sharded.handleCommand("wanderer: goto forest");
+      sharded.handleCommand("wanderer: goto riverbank");
+      LinkedList<CompletableFuture<String>> potions = new LinkedList<>();
+      LinkedList<CompletableFuture<String>> wanderer = new LinkedList<>();
+      for (int i = 0; i < 16; i++) {
+          potions.add(sharded.submitCommand("player" + (char) ('a' + i) + ": get potion"));
+          wanderer.add(sharded.submitCommand("wanderer: look"));
+      }
+      int pickedUp = 0;
+      for (CompletableFuture<String> reply : potions) {
+          if (reply.join().contains("You picked up")) pickedUp++;
+      }
+      assertEquals(1, pickedUp, "Potion was picked up more than once");
+      for (CompletableFuture<String> reply : wanderer) {
+          assertTrue(reply.join().contains("riverbank"));
+      }
+  }
+}